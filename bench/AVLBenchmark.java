@@ -0,0 +1,441 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark suite for every AVLInterface operation, plus equals and the
+ * AVL(Collection) constructor, over sequential, random and Zipfian keys at
+ * several tree sizes.
+ *
+ * Each benchmark is warmed up, then measured over several iterations that
+ * each run for at least a minimum time. For every benchmark it reports
+ * throughput, average time per operation, and allocation per operation and
+ * per second, measured with the per-thread allocation counter the way JMH's
+ * -prof gc does. Setup work, such as building the tree a remove benchmark
+ * empties, is not timed.
+ *
+ * Trees always hold the keys 0 to n - 1. Sequential keys are added and
+ * looked up in ascending order, random keys in a shuffled order, and
+ * Zipfian keys are added shuffled and looked up with a Zipfian skew.
+ *
+ * Usage: java AVLBenchmark [sizes] [benchmarks] [distributions]
+ *
+ * Each argument is a comma separated list, or "all". For example
+ * "java -Xmx8g AVLBenchmark 1000,10000000 get,inorder zipfian". The
+ * defaults are sizes 1000 to 1000000, every benchmark and every distribution.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long MIN_ITERATION_NANOS = 200000000L;
+    private static final double ZIPF_THETA = 0.99;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            threadBean();
+
+    /**
+     * Keeps the JIT from throwing results away
+     */
+    private static long sink;
+
+    /**
+     * How keys are chosen for a benchmark.
+     */
+    private enum Distribution {
+        SEQUENTIAL, RANDOM, ZIPFIAN;
+
+        /**
+         * Gets the n distinct keys a tree is built from, in the order they
+         * are added. Zipfian keys are added in random order.
+         *
+         * @param n
+         *            number of keys
+         * @param random
+         *            source of randomness
+         * @return Integer[] 0 to n - 1 in this distribution's order
+         */
+        Integer[] keys(int n, Random random) {
+            Integer[] keys = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = i;
+            }
+            if (this != SEQUENTIAL) {
+                Collections.shuffle(Arrays.asList(keys), random);
+            }
+            return keys;
+        }
+
+        /**
+         * Gets n keys to look up in a tree built from keys(n, random). Zipfian
+         * probes keep coming back to a few hot keys.
+         *
+         * @param n
+         *            number of keys in the tree
+         * @param random
+         *            source of randomness
+         * @return Integer[] n keys, all in the tree
+         */
+        Integer[] probes(int n, Random random) {
+            if (this != ZIPFIAN) {
+                return keys(n, random);
+            }
+            Integer[] probes = new Integer[n];
+            Zipf zipf = new Zipf(n, random);
+            for (int i = 0; i < n; i++) {
+                probes[i] = zipf.next();
+            }
+            return probes;
+        }
+    }
+
+    /**
+     * Zipfian ranks in [0, n), most popular first, using the generator from
+     * Gray et al., "Quickly Generating Billion-Record Synthetic Databases".
+     */
+    private static final class Zipf {
+        private final int n;
+        private final Random random;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+        private final double half;
+
+        /**
+         * @param n
+         *            number of ranks
+         * @param random
+         *            source of randomness
+         */
+        Zipf(int n, Random random) {
+            this.n = n;
+            this.random = random;
+            double zeta = 0;
+            for (int i = 1; i <= n; i++) {
+                zeta += 1 / Math.pow(i, ZIPF_THETA);
+            }
+            zetan = zeta;
+            double zeta2 = 1 + 1 / Math.pow(2, ZIPF_THETA);
+            alpha = 1 / (1 - ZIPF_THETA);
+            eta = (1 - Math.pow(2.0 / n, 1 - ZIPF_THETA))
+                    / (1 - zeta2 / zetan);
+            half = Math.pow(0.5, ZIPF_THETA);
+        }
+
+        /**
+         * @return int next rank
+         */
+        int next() {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            } else if (uz < 1 + half) {
+                return Math.min(1, n - 1);
+            }
+            return Math.min(n - 1,
+                    (int) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    /**
+     * Everything a benchmark needs, set up outside the timed region.
+     */
+    private static final class State {
+        private final Integer[] keys;
+        private final Integer[] probes;
+        private final List<Integer> keyList;
+        private AVL<Integer> tree;
+        private AVL<Integer> copy;
+
+        /**
+         * @param keys
+         *            keys in the tree, in the order they were added
+         * @param probes
+         *            keys looked up
+         */
+        State(Integer[] keys, Integer[] probes) {
+            this.keys = keys;
+            this.probes = probes;
+            this.keyList = Arrays.asList(keys);
+        }
+
+        /**
+         * Builds fresh trees from keys
+         */
+        void rebuild() {
+            tree = new AVL<>();
+            copy = new AVL<>();
+            for (Integer key : keys) {
+                tree.add(key);
+                copy.add(key);
+            }
+        }
+    }
+
+    /**
+     * One benchmark. A batch is some number of operations run back to back.
+     */
+    private enum Benchmark {
+        ADD(false) {
+            @Override
+            long batch(State state) {
+                AVL<Integer> tree = new AVL<>();
+                for (Integer key : state.keys) {
+                    tree.add(key);
+                }
+                sink += tree.size();
+                return state.keys.length;
+            }
+        },
+        REMOVE(true) {
+            @Override
+            long batch(State state) {
+                for (Integer key : state.keys) {
+                    if (state.tree.contains(key)) {
+                        state.tree.remove(key);
+                    }
+                }
+                return state.keys.length;
+            }
+        },
+        GET(false) {
+            @Override
+            long batch(State state) {
+                for (Integer key : state.probes) {
+                    sink += state.tree.get(key);
+                }
+                return state.probes.length;
+            }
+        },
+        CONTAINS(false) {
+            @Override
+            long batch(State state) {
+                for (Integer key : state.probes) {
+                    if (state.tree.contains(key)) {
+                        sink++;
+                    }
+                }
+                return state.probes.length;
+            }
+        },
+        PREORDER(false) {
+            @Override
+            long batch(State state) {
+                sink += state.tree.preorder().size();
+                return 1;
+            }
+        },
+        INORDER(false) {
+            @Override
+            long batch(State state) {
+                sink += state.tree.inorder().size();
+                return 1;
+            }
+        },
+        POSTORDER(false) {
+            @Override
+            long batch(State state) {
+                sink += state.tree.postorder().size();
+                return 1;
+            }
+        },
+        LEVELORDER(false) {
+            @Override
+            long batch(State state) {
+                sink += state.tree.levelorder().size();
+                return 1;
+            }
+        },
+        EQUALS(false) {
+            @Override
+            long batch(State state) {
+                if (state.tree.equals(state.copy)) {
+                    sink++;
+                }
+                return 1;
+            }
+        },
+        CONSTRUCTOR(false) {
+            @Override
+            long batch(State state) {
+                sink += new AVL<>(state.keyList).size();
+                return 1;
+            }
+        };
+
+        private final boolean destructive;
+
+        /**
+         * @param destructive
+         *            whether a batch uses up the tree it runs on
+         */
+        Benchmark(boolean destructive) {
+            this.destructive = destructive;
+        }
+
+        /**
+         * Runs one batch
+         *
+         * @param state
+         *            the trees and keys
+         * @return long number of operations run
+         */
+        abstract long batch(State state);
+    }
+
+    /**
+     * Runs the suite
+     *
+     * @param args
+     *            optional sizes, benchmarks and distributions
+     */
+    public static void main(String[] args) {
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : arg(args, 0, "1000,10000,100000,1000000")) {
+            sizes.add(Integer.parseInt(size.replace("_", "")));
+        }
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (String name : arg(args, 1, "all")) {
+            if (name.equalsIgnoreCase("all")) {
+                benchmarks.addAll(Arrays.asList(Benchmark.values()));
+            } else {
+                benchmarks.add(Benchmark.valueOf(name.toUpperCase()));
+            }
+        }
+        List<Distribution> distributions = new ArrayList<>();
+        for (String name : arg(args, 2, "all")) {
+            if (name.equalsIgnoreCase("all")) {
+                distributions.addAll(Arrays.asList(Distribution.values()));
+            } else {
+                distributions.add(Distribution.valueOf(name.toUpperCase()));
+            }
+        }
+
+        System.out.printf("%-12s %-10s %9s %14s %14s %12s %12s%n",
+                "Benchmark", "Keys", "Size", "Thrpt ops/s", "Avgt ns/op",
+                "Alloc B/op", "Alloc MB/s");
+        for (Distribution distribution : distributions) {
+            for (int size : sizes) {
+                Random random = new Random(42);
+                State state = new State(distribution.keys(size, random),
+                        distribution.probes(size, random));
+                state.rebuild();
+                for (Benchmark benchmark : benchmarks) {
+                    run(benchmark, distribution, size, state);
+                }
+            }
+        }
+        System.out.println("# " + sink);
+    }
+
+    /**
+     * Warms up and measures one benchmark, then prints its results
+     *
+     * @param benchmark
+     *            the benchmark
+     * @param distribution
+     *            how its keys were chosen
+     * @param size
+     *            number of keys
+     * @param state
+     *            the trees and keys
+     */
+    private static void run(Benchmark benchmark, Distribution distribution,
+            int size, State state) {
+        double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+        double[] bytesPerOp = new double[MEASURED_ITERATIONS];
+        for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+            long operations = 0;
+            long nanos = 0;
+            long bytes = 0;
+            while (nanos < MIN_ITERATION_NANOS) {
+                if (benchmark.destructive) {
+                    state.rebuild();
+                }
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                operations += benchmark.batch(state);
+                nanos += System.nanoTime() - start;
+                bytes += allocatedBytes() - allocatedBefore;
+            }
+            if (i >= WARMUP_ITERATIONS) {
+                nanosPerOp[i - WARMUP_ITERATIONS] = (double) nanos
+                        / operations;
+                bytesPerOp[i - WARMUP_ITERATIONS] = (double) bytes
+                        / operations;
+            }
+        }
+        if (benchmark.destructive) {
+            state.rebuild();
+        }
+        double avgNanos = mean(nanosPerOp);
+        double avgBytes = mean(bytesPerOp);
+        System.out.printf("%-12s %-10s %9d %14.0f %14.1f %12.1f %12.1f%n",
+                benchmark.name().toLowerCase(),
+                distribution.name().toLowerCase(), size, 1e9 / avgNanos,
+                avgNanos, avgBytes, avgBytes / avgNanos * 1e9 / (1 << 20));
+    }
+
+    /**
+     * @param values
+     *            measurements
+     * @return double their mean
+     */
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * @return long bytes this thread has allocated so far, or 0 if the JVM
+     *         can't tell
+     */
+    private static long allocatedBytes() {
+        if (THREADS == null) {
+            return 0;
+        }
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread()
+                .getId());
+    }
+
+    /**
+     * @return com.sun.management.ThreadMXBean the thread bean if it can
+     *         count allocations, otherwise null
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory
+                .getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param args
+     *            command line arguments
+     * @param index
+     *            which argument
+     * @param fallback
+     *            value if it was not given
+     * @return String[] the argument split on commas
+     */
+    private static String[] arg(String[] args, int index, String fallback) {
+        return (args.length > index ? args[index] : fallback).split(",");
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares two ways of putting an AVL tree in an order other than the
+ * natural one: wrapping every key in a Comparable that reverses it, and
+ * keeping the keys as they are with a Comparator. A tree of plain Integers
+ * in natural order is timed as well as the baseline.
+ *
+ * Before timing, trees of Strings and Longs are built and searched both in
+ * natural order and with three other Comparator classes, as they would be
+ * in a program with trees of many types and orders. That leaves both the
+ * comparator call in AVL.compareWith and the compareTo call in
+ * AVL.compareNatural megamorphic, so both ways are measured under the same
+ * profile pollution.
+ *
+ * Usage: java ComparatorBenchmark [size] [probes]
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class ComparatorBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /**
+     * Keeps the JIT from throwing results away
+     */
+    private static long sink;
+
+    /**
+     * An Integer ordered from largest to smallest, the way a key gets a
+     * different order without a Comparator
+     */
+    private static final class Reversed implements Comparable<Reversed> {
+        private final Integer value;
+
+        /**
+         * @param value
+         *            the key being wrapped
+         */
+        Reversed(Integer value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Reversed other) {
+            return other.value.compareTo(value);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Reversed
+                    && ((Reversed) other).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args
+     *            optional tree size and number of probes per round
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int probes = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+        Random random = new Random(1332);
+        Integer[] keys = new Integer[size];
+        Reversed[] wrappedKeys = new Reversed[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+            wrappedKeys[i] = new Reversed(keys[i]);
+        }
+        Integer[] lookups = new Integer[probes];
+        Reversed[] wrappedLookups = new Reversed[probes];
+        for (int i = 0; i < probes; i++) {
+            lookups[i] = random.nextBoolean() ? keys[random.nextInt(size)]
+                    : random.nextInt();
+            wrappedLookups[i] = new Reversed(lookups[i]);
+        }
+        pollute(random);
+
+        System.out.printf("size=%d probes=%d%n", size, probes);
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            AVL<Integer> natural = new AVL<>();
+            for (Integer key : keys) {
+                natural.add(key);
+            }
+            long naturalBuild = System.nanoTime() - start;
+            long naturalGet = time(natural, lookups);
+
+            start = System.nanoTime();
+            AVL<Reversed> wrapped = new AVL<>();
+            for (Reversed key : wrappedKeys) {
+                wrapped.add(key);
+            }
+            long wrappedBuild = System.nanoTime() - start;
+            long wrappedGet = time(wrapped, wrappedLookups);
+
+            start = System.nanoTime();
+            AVL<Integer> ordered = AVL.orderedBy(Collections.reverseOrder());
+            for (Integer key : keys) {
+                ordered.add(key);
+            }
+            long orderedBuild = System.nanoTime() - start;
+            long orderedGet = time(ordered, lookups);
+
+            if (round >= WARMUP_ROUNDS) {
+                report("natural", naturalBuild, size, naturalGet, probes);
+                report("wrapped", wrappedBuild, size, wrappedGet, probes);
+                report("comparator", orderedBuild, size, orderedGet, probes);
+            }
+        }
+        System.out.println(sink);
+    }
+
+    /**
+     * Builds and searches trees of other key types in other orders, so that
+     * the comparator call in AVL.compareWith has seen more than two
+     * Comparator classes and compareTo more than two receiver classes
+     *
+     * @param random
+     *            source of keys
+     */
+    private static void pollute(Random random) {
+        List<AVL<String>> strings = Arrays.asList(new AVL<String>(),
+                AVL.orderedBy(String.CASE_INSENSITIVE_ORDER),
+                AVL.orderedBy(Comparator.comparingInt(String::length)
+                        .thenComparing(Comparator.naturalOrder())));
+        List<AVL<Long>> longs = Arrays.asList(new AVL<Long>(),
+                AVL.orderedBy(new ByLowBits()));
+        for (int i = 0; i < 100000; i++) {
+            for (AVL<String> tree : strings) {
+                tree.add(Integer.toString(random.nextInt()));
+            }
+            for (AVL<Long> tree : longs) {
+                tree.add(random.nextLong());
+            }
+        }
+        for (int i = 0; i < 100000; i++) {
+            for (AVL<String> tree : strings) {
+                sink += tree.contains(Integer.toString(i)) ? 1 : 0;
+            }
+            for (AVL<Long> tree : longs) {
+                sink += tree.contains((long) i) ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Orders Longs by their low 32 bits, one more Comparator class for
+     * pollute
+     */
+    private static final class ByLowBits implements Comparator<Long> {
+        @Override
+        public int compare(Long a, Long b) {
+            return Integer.compareUnsigned((int) (long) a, (int) (long) b);
+        }
+    }
+
+    /**
+     * @param <T>
+     *            the type of data in the tree
+     * @param tree
+     *            tree being searched
+     * @param lookups
+     *            probes
+     * @return long nanoseconds taken
+     */
+    private static <T extends Comparable<? super T>> long time(AVL<T> tree,
+            T[] lookups) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (T key : lookups) {
+            if (tree.contains(key)) {
+                hits++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        sink += hits;
+        return time;
+    }
+
+    /**
+     * @param name
+     *            how the tree is ordered
+     * @param build
+     *            nanoseconds to add every key
+     * @param size
+     *            number of keys added
+     * @param get
+     *            nanoseconds to run every probe
+     * @param probes
+     *            number of probes
+     */
+    private static void report(String name, long build, int size, long get,
+            int probes) {
+        System.out.printf("%-10s add %6.1f ns/op   contains %6.1f ns/op%n",
+                name, (double) build / size, (double) get / probes);
+    }
+}
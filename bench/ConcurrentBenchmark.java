@@ -0,0 +1,165 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures lookup throughput as reader threads go from 1 to N, comparing
+ * ConcurrentAVL with an AVL behind one global lock, which is how the tree
+ * was shared before. One writer thread keeps adding and removing keys the
+ * whole time so readers race real rotations.
+ *
+ * Usage: java ConcurrentBenchmark [size] [maxReaders] [millisPerRun]
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class ConcurrentBenchmark {
+
+    /**
+     * A tree the benchmark can read and write
+     */
+    private interface Target {
+        /**
+         * @param key
+         *            key looked up
+         * @return boolean whether it was found
+         */
+        boolean contains(Integer key);
+
+        /**
+         * @param key
+         *            key added then removed again
+         */
+        void churn(Integer key);
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args
+     *            optional tree size, most reader threads and run length
+     * @throws InterruptedException
+     *             if interrupted while waiting for threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int maxReaders = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+        ConcurrentAVL<Integer> concurrent = new ConcurrentAVL<>();
+        AVL<Integer> locked = new AVL<>();
+        for (int i = 0; i < size; i += 2) {
+            concurrent.add(i);
+            locked.add(i);
+        }
+        Target concurrentTarget = new Target() {
+            @Override
+            public boolean contains(Integer key) {
+                return concurrent.contains(key);
+            }
+
+            @Override
+            public void churn(Integer key) {
+                concurrent.add(key);
+                concurrent.remove(key);
+            }
+        };
+        Target lockedTarget = new Target() {
+            @Override
+            public boolean contains(Integer key) {
+                synchronized (locked) {
+                    return locked.contains(key);
+                }
+            }
+
+            @Override
+            public void churn(Integer key) {
+                synchronized (locked) {
+                    locked.add(key);
+                    locked.remove(key);
+                }
+            }
+        };
+
+        System.out.printf("%7s %20s %20s%n", "readers", "global lock ops/s",
+                "ConcurrentAVL ops/s");
+        for (int readers = 1; readers <= maxReaders; readers *= 2) {
+            double lockedRate = run(lockedTarget, size, readers, millis);
+            double concurrentRate = run(concurrentTarget, size, readers,
+                    millis);
+            System.out.printf("%7d %20.0f %20.0f%n", readers, lockedRate,
+                    concurrentRate);
+            if (readers < maxReaders && readers * 2 > maxReaders) {
+                readers = maxReaders / 2;
+            }
+        }
+    }
+
+    /**
+     * @param target
+     *            tree being measured
+     * @param size
+     *            range of keys in the tree
+     * @param readers
+     *            number of reader threads
+     * @param millis
+     *            how long to run
+     * @return double lookups per second across all readers
+     * @throws InterruptedException
+     *             if interrupted while waiting for threads
+     */
+    private static double run(Target target, int size, int readers,
+            long millis) throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        LongAdder lookups = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[readers + 1];
+        for (int r = 0; r < readers; r++) {
+            int seed = r;
+            threads[r] = new Thread(() -> {
+                Random random = new Random(seed);
+                await(start);
+                long count = 0;
+                while (!done.get()) {
+                    target.contains(random.nextInt(size));
+                    count++;
+                }
+                lookups.add(count);
+            });
+        }
+        threads[readers] = new Thread(() -> {
+            Random random = new Random(-1);
+            await(start);
+            while (!done.get()) {
+                // odd keys are never in the tree between churns
+                target.churn(random.nextInt(size / 2) * 2 + 1);
+            }
+        });
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return lookups.sum() / seconds;
+    }
+
+    /**
+     * @param latch
+     *            latch to wait on
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Measures DurableAVL write throughput as more writes are grouped into each
+ * fsync, from forcing every write up to large batches, with an in-memory
+ * AVL as the ceiling. Each run writes to a fresh directory with compaction
+ * off, so only logging and fsync are measured.
+ *
+ * Usage: java DurableBenchmark [directory] [writes] [largestBatch]
+ *
+ * The directory should be on the disk being measured and defaults to the
+ * system temporary directory.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class DurableBenchmark {
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args
+     *            optional directory, number of writes and largest batch
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path parent = args.length > 0 ? Paths.get(args[0]) : Paths.get(System
+                .getProperty("java.io.tmpdir"));
+        int writes = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int largestBatch = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+        Random random = new Random(1332);
+        Integer[] keys = new Integer[writes];
+        for (int i = 0; i < writes; i++) {
+            keys[i] = random.nextInt();
+        }
+
+        // the first round only warms up the JIT
+        for (int round = 0; round < 2; round++) {
+            run(parent, keys, largestBatch, round == 1);
+        }
+    }
+
+    /**
+     * Writes keys into an in-memory AVL and then into DurableAVLs with
+     * growing batches
+     *
+     * @param parent
+     *            directory to put each DurableAVL's directory in
+     * @param keys
+     *            keys to add
+     * @param largestBatch
+     *            largest number of writes per fsync
+     * @param print
+     *            whether to print the results
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    private static void run(Path parent, Integer[] keys, int largestBatch,
+            boolean print) throws IOException {
+        long start = System.nanoTime();
+        AVL<Integer> memory = new AVL<>();
+        for (Integer key : keys) {
+            memory.add(key);
+        }
+        if (print) {
+            report("in memory", keys.length, System.nanoTime() - start);
+        }
+
+        for (int batch = 1; batch <= largestBatch; batch *= 4) {
+            Path directory = Files.createTempDirectory(parent, "durable");
+            try {
+                start = System.nanoTime();
+                try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                        AVLKeyCodec.INTEGER, batch, Long.MAX_VALUE)) {
+                    for (Integer key : keys) {
+                        tree.add(key);
+                    }
+                }
+                if (print) {
+                    report("sync every " + batch, keys.length,
+                            System.nanoTime() - start);
+                }
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    /**
+     * @param name
+     *            what was run
+     * @param writes
+     *            number of writes
+     * @param nanos
+     *            how long they took
+     */
+    private static void report(String name, int writes, long nanos) {
+        System.out.printf("%-16s %12.0f writes/s %10.1f us/write%n", name,
+                writes * 1e9 / nanos, nanos / 1e3 / writes);
+    }
+
+    /**
+     * @param directory
+     *            directory to delete along with everything in it
+     * @throws IOException
+     *             if it cannot be deleted
+     */
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                path.toFile().delete();
+            });
+        }
+    }
+}
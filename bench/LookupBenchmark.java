@@ -0,0 +1,129 @@
+import java.util.Random;
+
+/**
+ * Microbenchmark for the AVL lookup path. Times contains() against the old
+ * recursive find, which is kept here as a baseline and walks the same tree
+ * through getRoot(). Every probe is boxed up front so the timed loops only
+ * measure the lookups.
+ *
+ * Usage: java LookupBenchmark [size] [probes]
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class LookupBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /**
+     * Keeps the JIT from throwing the lookups away
+     */
+    private static int sink;
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args
+     *            optional tree size and number of probes per round
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int probes = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+        Random random = new Random(42);
+        AVL<Integer> tree = new AVL<>();
+        for (int i = 0; i < size; i++) {
+            // even keys only, so odd probes miss
+            tree.add(random.nextInt(size) * 2);
+        }
+        Integer[] keys = new Integer[probes];
+        for (int i = 0; i < probes; i++) {
+            keys[i] = random.nextInt(size * 2);
+        }
+
+        System.out.printf("size=%d height=%d probes=%d%n", tree.size(),
+                tree.height(), probes);
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long recursive = timeRecursive(tree, keys);
+            long iterative = timeIterative(tree, keys);
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf(
+                        "recursive find %6.1f ns/op   contains %6.1f ns/op%n",
+                        (double) recursive / probes,
+                        (double) iterative / probes);
+            }
+        }
+        System.out.println(sink);
+    }
+
+    /**
+     * @param tree
+     *            tree being searched
+     * @param keys
+     *            probes
+     * @return long nanoseconds taken
+     */
+    private static long timeIterative(AVL<Integer> tree, Integer[] keys) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (Integer key : keys) {
+            if (tree.contains(key)) {
+                hits++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        sink += hits;
+        return time;
+    }
+
+    /**
+     * @param tree
+     *            tree being searched
+     * @param keys
+     *            probes
+     * @return long nanoseconds taken
+     */
+    private static long timeRecursive(AVL<Integer> tree, Integer[] keys) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (Integer key : keys) {
+            if (tree.getRoot() != null && find(tree.getRoot(), key) != null) {
+                hits++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        sink += hits;
+        return time;
+    }
+
+    /**
+     * The recursive lookup AVL used before it switched to a loop
+     *
+     * @param node
+     *            node we're currently at
+     * @param data
+     *            data being found
+     * @return AVLNode of nodes
+     */
+    private static AVLNode<Integer> find(AVLNode<Integer> node, Integer data) {
+        int i = node.getData().compareTo(data);
+
+        if (i == 0) {
+            return node;
+        }
+        if (i < 0) {
+            if (node.getRight() == null) {
+                return null;
+            } else {
+                return find(node.getRight(), data);
+            }
+        } else {
+            if (node.getLeft() == null) {
+                return null;
+            } else {
+                return find(node.getLeft(), data);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.Random;
+
+/**
+ * Compares IntAVL with AVL&lt;Integer&gt; on heap used per key and on insert
+ * and lookup throughput. The boxed tree is fed int keys the way callers use
+ * it, so autoboxing is part of what gets measured.
+ *
+ * Usage: java PrimitiveBenchmark [size]
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class PrimitiveBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * Keeps the JIT from throwing the lookups away
+     */
+    private static int sink;
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args
+     *            optional number of keys
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int[] keys = new int[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = usedMemory();
+            long start = System.nanoTime();
+            AVL<Integer> boxed = new AVL<>();
+            for (int key : keys) {
+                boxed.add(key);
+            }
+            long boxedAdd = System.nanoTime() - start;
+            long boxedBytes = usedMemory() - before;
+            start = System.nanoTime();
+            for (int key : keys) {
+                if (boxed.contains(key)) {
+                    sink++;
+                }
+            }
+            long boxedGet = System.nanoTime() - start;
+            boxed = null;
+
+            before = usedMemory();
+            start = System.nanoTime();
+            IntAVL primitive = new IntAVL();
+            for (int key : keys) {
+                primitive.add(key);
+            }
+            long primitiveAdd = System.nanoTime() - start;
+            long primitiveBytes = usedMemory() - before;
+            start = System.nanoTime();
+            for (int key : keys) {
+                if (primitive.contains(key)) {
+                    sink++;
+                }
+            }
+            long primitiveGet = System.nanoTime() - start;
+
+            System.out.printf("AVL<Integer> add %6.1f ns/op  contains %6.1f "
+                    + "ns/op  %5.1f bytes/key%n", (double) boxedAdd / size,
+                    (double) boxedGet / size, (double) boxedBytes / size);
+            System.out.printf("IntAVL       add %6.1f ns/op  contains %6.1f "
+                    + "ns/op  %5.1f bytes/key%n",
+                    (double) primitiveAdd / size,
+                    (double) primitiveGet / size,
+                    (double) primitiveBytes / size);
+            sink += primitive.size();
+        }
+        System.out.println(sink);
+    }
+
+    /**
+     * @return long bytes of heap in use after collecting garbage
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
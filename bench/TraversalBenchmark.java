@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times exporting a large tree: the sequential walk into an ArrayList that
+ * inorder() does, against inorder(T[]) and toArray(), which write subtrees
+ * to their own ranges of one presized array in parallel.
+ *
+ * Usage: java -Xmx8g TraversalBenchmark [size]
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class TraversalBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /**
+     * Keeps the JIT from throwing results away
+     */
+    private static long sink;
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args
+     *            optional tree size
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+
+        Random random = new Random(1332);
+        List<Integer> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(random.nextInt());
+        }
+        // built from random keys so the nodes are spread through the heap
+        AVL<Integer> tree = new AVL<>();
+        tree.addAll(keys);
+        keys = null;
+
+        System.out.printf("size=%d threads=%d%n", tree.size(), Runtime
+                .getRuntime().availableProcessors());
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<Integer> list = new ArrayList<>();
+            walk(tree.getRoot(), list);
+            long sequential = System.nanoTime() - start;
+            sink += list.size();
+            list = null;
+
+            start = System.nanoTime();
+            Integer[] array = tree.inorder(new Integer[tree.size()]);
+            long parallel = System.nanoTime() - start;
+            sink += array.length;
+            array = null;
+
+            start = System.nanoTime();
+            Object[] objects = tree.toArray();
+            long toArray = System.nanoTime() - start;
+            sink += objects.length;
+            objects = null;
+
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf("sequential list %7.1f ms   "
+                        + "inorder(T[]) %7.1f ms   toArray %7.1f ms%n",
+                        sequential / 1e6, parallel / 1e6, toArray / 1e6);
+            }
+        }
+        System.out.println(sink);
+    }
+
+    /**
+     * The recursive inorder walk inorder() does
+     *
+     * @param node
+     *            node we're currently at
+     * @param data
+     *            list being added to
+     */
+    private static void walk(AVLNode<Integer> node, List<Integer> data) {
+        if (node != null) {
+            walk(node.getLeft(), data);
+            data.add(node.getData());
+            walk(node.getRight(), data);
+        }
+    }
+}
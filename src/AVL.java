@@ -1,19 +1,67 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Your implementation of an AVL Tree.
  *
+ * The tree is ordered by its elements' compareTo unless it was built with a
+ * Comparator, which then decides the order instead. compare tests the final
+ * comparator field and hands off to one of two methods, so compareTo for
+ * trees in natural order and Comparator.compare for trees with a comparator
+ * are separate call sites with separate type profiles. However many
+ * Comparator classes a program uses, its natural order trees never share a
+ * call site with them. The JIT profiles by call site, not by tree, so each
+ * site is still shared by every tree that takes that path.
+ *
  * @author jredston3
  * @version 1.0
  */
-public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
+public class AVL<T extends Comparable<? super T>> implements AVLInterface<T>,
+        Iterable<T> {
+
+    // set operations on subtrees at least this big run their halves in
+    // parallel
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    // level order iterators start with this much room and grow as needed
+    private static final int INITIAL_QUEUE_CAPACITY = 16;
+
+    // snapshot files start with "AVL1"
+    private static final int SNAPSHOT_MAGIC = 0x41564C31;
+    private static final int SNAPSHOT_LEFT = 1;
+    private static final int SNAPSHOT_RIGHT = 2;
+    private static final int SNAPSHOT_BUFFER = 1 << 16;
+    private static final int SNAPSHOT_MAX_DEPTH = 128;
 
-    // Do not make any new instance variables.
     private AVLNode<T> root;
     private int size;
+    // null for natural ordering
+    private final Comparator<? super T> comparator;
+    // number of structural changes, used by iterators to fail fast
+    private int modCount;
+    // null unless metrics have been turned on
+    private AVLMetricsListener metrics;
+    // comparisons made while metrics are on, from any thread
+    private LongAdder comparisons;
+    // nodes the last remove walked past to find a successor
+    private int successorPath;
 
     /**
      * A no argument constructor that should initialize an empty AVL tree. DO
@@ -22,170 +70,630 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
     public AVL() {
         root = null;
         size = 0;
+        comparator = null;
+    }
+
+    /**
+     * Creates an empty tree ordered by comparator. Private so that new
+     * AVL<>(null) still means the Collection constructor.
+     *
+     * @param comparator
+     *            the ordering, or null for the elements' natural ordering
+     */
+    private AVL(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Creates an empty tree ordered by comparator instead of the elements'
+     * natural ordering.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     * @param comparator
+     *            the ordering, or null for the elements' natural ordering
+     * @return AVL an empty tree
+     */
+    public static <T extends Comparable<? super T>> AVL<T> orderedBy(
+            Comparator<? super T> comparator) {
+        return new AVL<T>(comparator);
     }
 
     /**
      * Initializes the AVL tree with the data in the Collection. The data should
      * be added in the same order it is in the Collection.
      *
+     * If the data is already sorted with no duplicates the tree is built
+     * directly in linear time, otherwise each element is added in turn.
+     *
      * @param data
      *            the data to add to the tree
      * @throws IllegalArgumentException
      *             if data or any element in data is null
      */
     public AVL(Collection<T> data) {
+        this(data, null);
+    }
+
+    /**
+     * Initializes a tree ordered by comparator with the data in the
+     * Collection, added in the order it is in the Collection. Like
+     * AVL(Collection), data already in order with no duplicates is built in
+     * linear time.
+     *
+     * @param data
+     *            the data to add to the tree
+     * @param comparator
+     *            the ordering, or null for the elements' natural ordering
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null
+     */
+    @SuppressWarnings("unchecked")
+    public AVL(Collection<T> data, Comparator<? super T> comparator) {
+        this.comparator = comparator;
         if (data == null) {
             throw new IllegalArgumentException("data entered is null");
         }
-        size = 0;
-        for (T item : data) {
-            add(item);
+        Object[] items = data.toArray();
+        if (isStrictlyAscending(items)) {
+            root = build(items, 0, items.length - 1);
+            size = items.length;
+        } else {
+            for (Object item : items) {
+                add((T) item);
+            }
+        }
+    }
+
+    /**
+     * Builds an AVL tree from data that is sorted in ascending order with no
+     * duplicates, in linear time and without comparing any elements.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     * @param data
+     *            the sorted data to put in the tree
+     * @return AVL perfectly balanced tree holding data
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null, or if data is not
+     *             strictly ascending
+     */
+    public static <T extends Comparable<? super T>> AVL<T> fromSorted(
+            Collection<T> data) {
+        return fromSorted(data, null);
+    }
+
+    /**
+     * Builds a tree ordered by comparator from data that is already in that
+     * order with no duplicates, in linear time.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     * @param data
+     *            the sorted data to put in the tree
+     * @param comparator
+     *            the ordering, or null for the elements' natural ordering
+     * @return AVL perfectly balanced tree holding data
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null, or if data is not
+     *             strictly ascending in comparator's order
+     */
+    public static <T extends Comparable<? super T>> AVL<T> fromSorted(
+            Collection<T> data, Comparator<? super T> comparator) {
+        if (data == null) {
+            throw new IllegalArgumentException("data entered is null");
+        }
+        Object[] items = data.toArray();
+        AVL<T> tree = new AVL<T>(comparator);
+        if (!tree.isStrictlyAscending(items)) {
+            throw new IllegalArgumentException(
+                    "data is not sorted or has duplicates");
+        }
+        tree.root = tree.build(items, 0, items.length - 1);
+        tree.size = items.length;
+        return tree;
+    }
+
+    /**
+     * Checks that items are in ascending order with no duplicates
+     *
+     * @param items
+     *            data being checked
+     * @return boolean whether items can be built into a tree directly
+     * @throws IllegalArgumentException
+     *             if any element in items is null
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isStrictlyAscending(Object[] items) {
+        boolean sorted = true;
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == null) {
+                throw new IllegalArgumentException("data contains null");
+            }
+            if (sorted && i > 0
+                    && compare((T) items[i - 1], (T) items[i]) >= 0) {
+                sorted = false;
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Builds a perfectly balanced subtree out of a sorted range of items
+     *
+     * @param items
+     *            sorted data
+     * @param lo
+     *            first index in the range
+     * @param hi
+     *            last index in the range
+     * @return AVLNode root of the subtree, null if the range is empty
+     */
+    @SuppressWarnings("unchecked")
+    private AVLNode<T> build(Object[] items, int lo, int hi) {
+        if (lo > hi) {
+            return null;
         }
+        int mid = (lo + hi) >>> 1;
+        AVLNode<T> node = new AVLNode<T>((T) items[mid]);
+        node.setLeft(build(items, lo, mid - 1));
+        node.setRight(build(items, mid + 1, hi));
+        update(node);
+        return node;
+    }
 
+    /**
+     * Writes the tree to a file in a compact binary form that readSnapshot
+     * can load without comparing any keys. The file holds a header, then one
+     * entry per node in preorder: a byte saying which children the node has
+     * followed by its key written with codec. The file is forced to disk
+     * before this returns.
+     *
+     * @param file
+     *            file to write, replaced if it exists
+     * @param codec
+     *            writes the keys
+     * @throws IllegalArgumentException
+     *             if file or codec is null
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void writeSnapshot(Path file, AVLKeyCodec<? super T> codec)
+            throws IOException {
+        if (file == null || codec == null) {
+            throw new IllegalArgumentException("Argument given is null");
+        }
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putInt(size);
+            if (root != null) {
+                writeSnapshot(root, codec, channel, buffer);
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
     }
 
     /**
-     * Calculates height and balance factor of all nodes
+     * Writes the preorder entries of a subtree
      *
      * @param node
-     *            node who's height being calculated
-     * @return int of height
+     *            root of the subtree
+     * @param codec
+     *            writes the keys
+     * @param channel
+     *            file being written
+     * @param buffer
+     *            bytes not yet written to channel
+     * @throws IOException
+     *             if the file cannot be written
      */
-    private int calcHeight(AVLNode<T> node) {
+    private void writeSnapshot(AVLNode<T> node, AVLKeyCodec<? super T> codec,
+            FileChannel channel, ByteBuffer buffer) throws IOException {
+        int length = 1 + codec.encodedLength(node.getData());
+        if (buffer.remaining() < length) {
+            drain(channel, buffer);
+        }
+        // a key too big for the buffer gets one of its own
+        ByteBuffer out = length <= buffer.capacity() ? buffer : ByteBuffer
+                .allocate(length);
+        int flags = 0;
+        if (node.getLeft() != null) {
+            flags |= SNAPSHOT_LEFT;
+        }
+        if (node.getRight() != null) {
+            flags |= SNAPSHOT_RIGHT;
+        }
+        out.put((byte) flags);
+        codec.encode(node.getData(), out);
+        if (out != buffer) {
+            drain(channel, out);
+        }
+        if (node.getLeft() != null) {
+            writeSnapshot(node.getLeft(), codec, channel, buffer);
+        }
+        if (node.getRight() != null) {
+            writeSnapshot(node.getRight(), codec, channel, buffer);
+        }
+    }
 
-        if (node == null) {
-            return 0;
+    /**
+     * Writes everything in buffer to channel and empties buffer
+     *
+     * @param channel
+     *            file being written
+     * @param buffer
+     *            bytes to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
         }
-        if (node.getLeft() == null && node.getRight() == null) {
-            node.setBalanceFactor(0);
-            node.setHeight(0);
-            return 0;
-        } else {
+        buffer.clear();
+    }
 
-            node.setHeight(Math.max(calcHeight(node.getLeft()),
-                    calcHeight(node.getRight())) + 1);
+    /**
+     * Loads a tree written by writeSnapshot. The file is memory-mapped and
+     * the tree rebuilt in one linear pass over it, setting heights, balance
+     * factors and sizes from the recorded shape without comparing any keys,
+     * so it comes back exactly as it was written. A single mapping is used,
+     * which limits snapshots to 2GB.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     * @param file
+     *            file to read
+     * @param codec
+     *            reads the keys, must match the codec the file was written
+     *            with
+     * @return AVL the tree in the file
+     * @throws IllegalArgumentException
+     *             if file or codec is null
+     * @throws IOException
+     *             if the file cannot be read, is larger than 2GB, or is not
+     *             a valid snapshot
+     */
+    public static <T extends Comparable<? super T>> AVL<T> readSnapshot(
+            Path file, AVLKeyCodec<T> codec) throws IOException {
+        return readSnapshot(file, codec, null);
+    }
 
-            int leftHeight;
-            int rightHeight;
-            if (node.getLeft() == null) {
-                leftHeight = -1;
-            } else {
-                leftHeight = node.getLeft().getHeight();
+    /**
+     * Loads a tree written by writeSnapshot from a tree ordered by
+     * comparator. The order is not stored in the file, so it has to be given
+     * again here.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     * @param file
+     *            file to read
+     * @param codec
+     *            reads the keys, must match the codec the file was written
+     *            with
+     * @param comparator
+     *            the ordering the tree was written with, or null for the
+     *            elements' natural ordering
+     * @return AVL the tree in the file
+     * @throws IllegalArgumentException
+     *             if file or codec is null
+     * @throws IOException
+     *             if the file cannot be read, is larger than 2GB, or is not
+     *             a valid snapshot
+     */
+    public static <T extends Comparable<? super T>> AVL<T> readSnapshot(
+            Path file, AVLKeyCodec<T> codec, Comparator<? super T> comparator)
+            throws IOException {
+        if (file == null || codec == null) {
+            throw new IllegalArgumentException("Argument given is null");
+        }
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is larger than 2GB");
             }
-            if (node.getRight() == null) {
-                rightHeight = -1;
-            } else {
-                rightHeight = node.getRight().getHeight();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            AVL<T> tree = new AVL<T>(comparator);
+            int count;
+            try {
+                if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("File is not an AVL snapshot");
+                }
+                count = buffer.getInt();
+                if (count > 0) {
+                    tree.root = tree.readSnapshot(buffer, codec, 0);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Snapshot is truncated", e);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Snapshot is corrupt", e);
             }
-            node.setBalanceFactor(leftHeight - rightHeight);
-            return node.getHeight();
+            tree.size = tree.sizeOf(tree.root);
+            if (buffer.hasRemaining() || tree.size != count) {
+                throw new IOException("Snapshot is corrupt");
+            }
+            return tree;
+        }
+    }
+
+    /**
+     * Reads the preorder entries of a subtree
+     *
+     * @param buffer
+     *            snapshot positioned at the subtree's first entry
+     * @param codec
+     *            reads the keys
+     * @param depth
+     *            depth of the subtree's root
+     * @return AVLNode root of the subtree
+     * @throws IOException
+     *             if the entries do not describe an AVL tree
+     */
+    private AVLNode<T> readSnapshot(ByteBuffer buffer, AVLKeyCodec<T> codec,
+            int depth) throws IOException {
+        int flags = buffer.get();
+        // no AVL tree that fits in memory is anywhere near this tall, so a
+        // deeper file is corrupt and would only overflow the stack
+        if ((flags & ~(SNAPSHOT_LEFT | SNAPSHOT_RIGHT)) != 0
+                || depth > SNAPSHOT_MAX_DEPTH) {
+            throw new IOException("Snapshot is corrupt");
+        }
+        AVLNode<T> node = new AVLNode<T>(codec.decode(buffer));
+        if (node.getData() == null) {
+            throw new IOException("Snapshot holds a null key");
         }
+        if ((flags & SNAPSHOT_LEFT) != 0) {
+            node.setLeft(readSnapshot(buffer, codec, depth + 1));
+        }
+        if ((flags & SNAPSHOT_RIGHT) != 0) {
+            node.setRight(readSnapshot(buffer, codec, depth + 1));
+        }
+        update(node);
+        if (Math.abs(node.getBalanceFactor()) > 1) {
+            throw new IOException("Snapshot is not balanced");
+        }
+        return node;
     }
 
     @Override
     public void add(T data) {
-
         if (data == null) {
             throw new IllegalArgumentException("data given is null");
         }
-        if (root == null) {
+        AVLMetricsListener listener = metrics;
+        if (listener == null) {
+            root = add(data, root);
+            return;
+        }
+        long before = comparisons.sum();
+        long start = System.nanoTime();
+        root = add(data, root);
+        long nanos = System.nanoTime() - start;
+        int path = (int) (comparisons.sum() - before);
+        listener.completed(AVLMetricsListener.Operation.ADD, path, path,
+                nanos);
+    }
 
-            root = new AVLNode<T>(data);
-            root.setBalanceFactor(0);
-            root.setHeight(0);
+    /**
+     * Adds data below node, updating heights and balance factors only on the
+     * nodes along the search path and rebalancing on the way back up.
+     *
+     * @param data
+     *            data being added
+     * @param node
+     *            node we're currently at
+     * @return AVLNode new root of this subtree
+     */
+    private AVLNode<T> add(T data, AVLNode<T> node) {
+        if (node == null) {
             size++;
+            modCount++;
+            AVLNode<T> newNode = new AVLNode<T>(data);
+            update(newNode);
+            return newNode;
+        }
+        int i = compare(data, node.getData());
+        if (i < 0) {
+            node.setLeft(add(data, node.getLeft()));
+        } else if (i > 0) {
+            node.setRight(add(data, node.getRight()));
         } else {
+            // duplicate, nothing below this node changed
+            return node;
+        }
+        return balance(node);
+    }
 
-            root = add(data, root);
-
+    /**
+     * Compares two elements in the tree's order
+     *
+     * @param a
+     *            the first element
+     * @param b
+     *            the second element
+     * @return int negative, zero or positive as a is less than, equal to or
+     *         greater than b
+     */
+    int compare(T a, T b) {
+        AVLMetricsListener listener = metrics;
+        if (listener != null) {
+            comparisons.increment();
+            listener.compared();
         }
+        return comparator == null ? compareNatural(a, b)
+                : compareWith(a, b);
+    }
 
-        calcHeight(root);
-        // System.out.println("Before balancing my tree looks like this");
+    /**
+     * Compares two elements by their natural ordering, the call site only
+     * trees without a comparator reach
+     *
+     * @param a
+     *            the first element
+     * @param b
+     *            the second element
+     * @return int a.compareTo(b)
+     */
+    private int compareNatural(T a, T b) {
+        return a.compareTo(b);
+    }
 
-        // balanceTree(root, null);
-        // System.out.println("After balancing my tree looks like this");
+    /**
+     * Compares two elements with the tree's comparator, the call site only
+     * trees with a comparator reach
+     *
+     * @param a
+     *            the first element
+     * @param b
+     *            the second element
+     * @return int comparator.compare(a, b)
+     */
+    private int compareWith(T a, T b) {
+        return comparator.compare(a, b);
+    }
 
-        // calcHeight(root);
+    /**
+     * Gets the comparator the tree is ordered by.
+     *
+     * @return Comparator the ordering, or null if the tree uses the
+     *         elements' natural ordering
+     */
+    public Comparator<? super T> comparator() {
+        return comparator;
     }
 
     /**
+     * Gets the height of a node
+     *
      * @param node
-     *            node we're currently at
-     * @param data
-     *            data being added
-     * @return AVLNode new node
+     *            node whose height is wanted, may be null
+     * @return int height of the node, -1 if node is null
      */
-
-    private AVLNode<T> add(T data, AVLNode<T> node) {
+    private int height(AVLNode<T> node) {
         if (node == null) {
-            node = new AVLNode<T>(data);
-            size++;
-        } else {
-            int i = data.compareTo(node.getData());
-
-            if (i < 0) {
-                node.setLeft(add(data, node.getLeft()));
-                int leftHeight;
-                if (node.getLeft() == null) {
-                    leftHeight = -1;
-                } else {
-                    leftHeight = node.getLeft().getHeight();
-                }
-                int rightHeight;
-                if (node.getRight() == null) {
-                    rightHeight = -1;
-                } else {
-                    rightHeight = node.getRight().getHeight();
-                }
-                if (leftHeight - rightHeight == 2) {
-                    if (data.compareTo(node.getLeft().getData()) < 0) {
-                        node = rotateWithLeftChild(node);
-                    } else {
-                        node = doubleWithLeftChild(node);
-                    }
-                }
-            } else if (i > 0) {
-                node.setRight(add(data, node.getRight()));
-                int leftHeight;
-                if (node.getLeft() == null) {
-                    leftHeight = -1;
-                } else {
-                    leftHeight = node.getLeft().getHeight();
-                }
-                int rightHeight;
-                if (node.getRight() == null) {
-                    rightHeight = -1;
-                } else {
-                    rightHeight = node.getRight().getHeight();
-                }
-                if (rightHeight - leftHeight == 2) {
-                    if (data.compareTo(node.getRight().getData()) > 0) {
-                        node = rotateWithRightChild(node);
-                    } else {
-                        node = doubleWithRightChild(node);
-                    }
-                }
-            }
+            return -1;
         }
+        return node.getHeight();
+    }
 
-        int leftHeight;
-        if (node.getLeft() == null) {
-            leftHeight = -1;
-        } else {
-            leftHeight = node.getLeft().getHeight();
+    /**
+     * Gets the number of nodes in a subtree
+     *
+     * @param node
+     *            root of the subtree, may be null
+     * @return int size of the subtree, 0 if node is null
+     */
+    private int sizeOf(AVLNode<T> node) {
+        if (node == null) {
+            return 0;
         }
-        int rightHeight;
-        if (node.getRight() == null) {
-            rightHeight = -1;
-        } else {
-            rightHeight = node.getRight().getHeight();
+        return node.getSize();
+    }
+
+    /**
+     * Gets the digest of a subtree
+     *
+     * @param node
+     *            root of the subtree, may be null
+     * @return long digest of the subtree, 0 if node is null
+     */
+    private long digestOf(AVLNode<T> node) {
+        if (node == null) {
+            return 0;
         }
+        return node.getDigest();
+    }
+
+    /**
+     * Recalculates height, subtree size and digest of a node from its
+     * children, which must already be up to date. The node works out its
+     * balance factor from the same heights.
+     *
+     * @param node
+     *            node being updated
+     */
+    private void update(AVLNode<T> node) {
+        AVLNode<T> left = node.getLeft();
+        AVLNode<T> right = node.getRight();
+        node.setHeight(Math.max(height(left), height(right)) + 1);
+        node.setSize(sizeOf(left) + sizeOf(right) + 1);
+        node.setDigest(digest(node.getData().hashCode(), digestOf(left),
+                digestOf(right)));
+    }
+
+    /**
+     * Hashes a node's data together with the digests of its children. The
+     * children go in at different rotations, so mirrored subtrees don't
+     * collide, and the result is mixed the way SplitMix64 finishes.
+     *
+     * @param hash
+     *            hash code of the node's data
+     * @param left
+     *            digest of the left subtree
+     * @param right
+     *            digest of the right subtree
+     * @return long digest of the subtree
+     */
+    private static long digest(int hash, long left, long right) {
+        long h = hash * 0x9E3779B97F4A7C15L + left;
+        h = Long.rotateLeft(h, 31) * 0xBF58476D1CE4E5B9L + right;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
 
-        node.setHeight(Math.max(leftHeight, rightHeight) + 1);
+    /**
+     * Updates a node and rotates it if it has become unbalanced. The children
+     * of node must already be balanced and up to date.
+     *
+     * @param node
+     *            node being balanced
+     * @return AVLNode new root of this subtree
+     */
+    private AVLNode<T> balance(AVLNode<T> node) {
+        update(node);
+        if (node.getBalanceFactor() > 1) {
+            if (node.getLeft().getBalanceFactor() >= 0) {
+                node = rotateWithLeftChild(node);
+                rotated(false);
+            } else {
+                node = doubleWithLeftChild(node);
+                rotated(true);
+            }
+        } else if (node.getBalanceFactor() < -1) {
+            if (node.getRight().getBalanceFactor() <= 0) {
+                node = rotateWithRightChild(node);
+                rotated(false);
+            } else {
+                node = doubleWithRightChild(node);
+                rotated(true);
+            }
+        }
         return node;
     }
 
+    /**
+     * Tells the metrics listener, if there is one, about a rotation. This is
+     * only reached when a rotation happens, so balancing without metrics pays
+     * nothing on the common path.
+     *
+     * @param doubleRotation
+     *            whether it was a double rotation
+     */
+    private void rotated(boolean doubleRotation) {
+        AVLMetricsListener listener = metrics;
+        if (listener != null) {
+            listener.rotated(doubleRotation);
+        }
+    }
+
     /**
      * Rotates with left child
      *
@@ -197,27 +705,8 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
         AVLNode<T> node1 = node2.getLeft();
         node2.setLeft(node1.getRight());
         node1.setRight(node2);
-        int leftHeight;
-        if (node2.getLeft() == null) {
-            leftHeight = -1;
-        } else {
-            leftHeight = node2.getLeft().getHeight();
-        }
-        int rightHeight;
-        if (node2.getRight() == null) {
-            rightHeight = -1;
-        } else {
-            rightHeight = node2.getRight().getHeight();
-        }
-        int leftHeight2;
-        if (node1.getLeft() == null) {
-            leftHeight2 = -1;
-        } else {
-            leftHeight2 = node1.getLeft().getHeight();
-        }
-        node2.setHeight(Math.max(leftHeight, rightHeight) + 1);
-
-        node1.setHeight(Math.max(leftHeight2, node2.getHeight()) + 1);
+        update(node2);
+        update(node1);
         return node1;
     }
 
@@ -233,26 +722,8 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
         AVLNode<T> node2 = node1.getRight();
         node1.setRight(node2.getLeft());
         node2.setLeft(node1);
-        int leftHeight;
-        if (node1.getLeft() == null) {
-            leftHeight = -1;
-        } else {
-            leftHeight = node1.getLeft().getHeight();
-        }
-        int rightHeight;
-        if (node1.getRight() == null) {
-            rightHeight = -1;
-        } else {
-            rightHeight = node1.getRight().getHeight();
-        }
-        int rightHeight2;
-        if (node2.getRight() == null) {
-            rightHeight2 = -1;
-        } else {
-            rightHeight2 = node2.getRight().getHeight();
-        }
-        node1.setHeight(Math.max(leftHeight, rightHeight) + 1);
-        node2.setHeight(Math.max(rightHeight2, node1.getHeight()) + 1);
+        update(node1);
+        update(node2);
         return node2;
     }
 
@@ -280,246 +751,701 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
         return rotateWithRightChild(node1);
     }
 
+    @Override
+    public T remove(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        AVLNode<T> dummy = new AVLNode<T>(null);
+        AVLMetricsListener listener = metrics;
+        if (listener == null) {
+            root = remove(root, data, dummy);
+            return dummy.getData();
+        }
+        long before = comparisons.sum();
+        successorPath = 0;
+        long start = System.nanoTime();
+        try {
+            root = remove(root, data, dummy);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            int path = (int) (comparisons.sum() - before);
+            listener.completed(AVLMetricsListener.Operation.REMOVE, path,
+                    path + successorPath, nanos);
+        }
+        return dummy.getData();
+    }
+
     /**
-     * balances the tree
+     * Removes data from below node. Heights, balance factors and rotations
+     * are only done on the nodes along the path to the removed node.
      *
      * @param node
-     *            node being rotated around
-     * @return AVLNode nodes in correct order
+     *            node we're currently at
+     * @param data
+     *            data being removed
+     * @param dummy
+     *            node the removed data is stored in
+     * @return AVLNode new root of this subtree
      */
-    private AVLNode<T> balanceTree(AVLNode<T> node) {
+    private AVLNode<T> remove(AVLNode<T> node, T data, AVLNode<T> dummy) {
         if (node == null) {
-            return null;
+            throw new java.util.NoSuchElementException(
+                    "Data is not in AVL cannot be removed");
+        }
+        int i = compare(data, node.getData());
+        if (i < 0) {
+            node.setLeft(remove(node.getLeft(), data, dummy));
+        } else if (i > 0) {
+            node.setRight(remove(node.getRight(), data, dummy));
         } else {
+            dummy.setData(node.getData());
+            size--;
+            modCount++;
+            if (node.getLeft() == null) {
+                return node.getRight();
+            } else if (node.getRight() == null) {
+                return node.getLeft();
+            }
+            // has two children, replace with the successor
+            AVLNode<T> successor = node.getRight();
+            int path = 1;
+            while (successor.getLeft() != null) {
+                successor = successor.getLeft();
+                path++;
+            }
+            successorPath = path;
+            node.setData(successor.getData());
+            node.setRight(removeMin(node.getRight()));
+        }
+        return balance(node);
+    }
 
-            balanceTree(node.getLeft());
-            balanceTree(node.getRight());
-            System.out.println(node);
-
-            if (node.getBalanceFactor() == 2) {
-                if (node.getLeft().getBalanceFactor() > -1) {
-                    System.out.println("single left");
-
-                    node = rotateWithLeftChild(node);
-                } else {
-                    System.out.println("double left");
-
-                    node = doubleWithLeftChild(node);
-                }
-            } else if (node.getBalanceFactor() == -2) {
-                if (node.getRight().getBalanceFactor() < 1) {
-                    System.out.println("single right");
+    /**
+     * Removes the smallest node below node
+     *
+     * @param node
+     *            node we're currently at
+     * @return AVLNode new root of this subtree
+     */
+    private AVLNode<T> removeMin(AVLNode<T> node) {
+        if (node.getLeft() == null) {
+            return node.getRight();
+        }
+        node.setLeft(removeMin(node.getLeft()));
+        return balance(node);
+    }
 
-                    node = rotateWithRightChild(node);
-                } else {
-                    System.out.println("double right");
+    /**
+     * Joins two trees around a middle element in O(log n) time. Every element
+     * of left must be less than mid and every element of right greater than
+     * mid. The nodes of left and right are moved into the new tree, so both
+     * are left empty.
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param left
+     *            tree of data less than mid
+     * @param mid
+     *            data going between the two trees
+     * @param right
+     *            tree of data greater than mid
+     * @return AVL holding the data of left, mid and right
+     * @throws IllegalArgumentException
+     *             if any argument is null, the trees are not ordered by the
+     *             same comparator, or the data is not in order
+     */
+    public static <T extends Comparable<? super T>> AVL<T> join(AVL<T> left,
+            T mid, AVL<T> right) {
+        if (left == null || mid == null || right == null) {
+            throw new IllegalArgumentException("Argument given is null");
+        }
+        checkSameOrder(left, right);
+        if ((left.root != null && left.compare(left.last(), mid) >= 0)
+                || (right.root != null
+                        && right.compare(right.first(), mid) <= 0)) {
+            throw new IllegalArgumentException(
+                    "left must be less than mid and right greater than mid");
+        }
+        AVL<T> joined = new AVL<T>(left.comparator);
+        joined.root = joined.join(left.root, new AVLNode<T>(mid),
+                right.root);
+        joined.size = left.size + right.size + 1;
+        left.clear();
+        right.clear();
+        return joined;
+    }
 
-                    node = doubleWithRightChild(node);
-                }
-            }
+    /**
+     * Splits this tree around pivot in O(log n) time into a tree of the data
+     * less than pivot, the data equal to pivot if there is any, and a tree of
+     * the data greater than pivot. The nodes of this tree are moved into the
+     * two new trees, so this tree is left empty.
+     *
+     * @param pivot
+     *            data to split around, does not have to be in the tree
+     * @return Split the three parts
+     * @throws IllegalArgumentException
+     *             if pivot is null
+     */
+    public Split<T> split(T pivot) {
+        if (pivot == null) {
+            throw new IllegalArgumentException("Pivot given is null");
         }
-        int leftHeight;
-        if (node.getLeft() == null) {
-            leftHeight = -1;
-        } else {
-            leftHeight = node.getLeft().getHeight();
+        AVLNode<T> parts = new AVLNode<T>(null);
+        split(root, pivot, parts);
+        AVL<T> less = new AVL<T>(comparator);
+        less.root = parts.getLeft();
+        less.size = sizeOf(less.root);
+        AVL<T> greater = new AVL<T>(comparator);
+        greater.root = parts.getRight();
+        greater.size = sizeOf(greater.root);
+        clear();
+        return new Split<T>(less, parts.getData(), greater);
+    }
+
+    /**
+     * Splits a subtree around pivot
+     *
+     * @param node
+     *            root of the subtree being split
+     * @param pivot
+     *            data to split around
+     * @param parts
+     *            gets the subtree less than pivot as its left child, the
+     *            subtree greater than pivot as its right child, and the data
+     *            equal to pivot, or null, as its data
+     */
+    private void split(AVLNode<T> node, T pivot, AVLNode<T> parts) {
+        if (node == null) {
+            parts.setLeft(null);
+            parts.setRight(null);
+            parts.setData(null);
+            return;
         }
-        int rightHeight;
-        if (node.getRight() == null) {
-            rightHeight = -1;
+        AVLNode<T> left = node.getLeft();
+        AVLNode<T> right = node.getRight();
+        int i = compare(pivot, node.getData());
+        if (i == 0) {
+            parts.setLeft(left);
+            parts.setRight(right);
+            parts.setData(node.getData());
+        } else if (i < 0) {
+            split(left, pivot, parts);
+            parts.setRight(join(parts.getRight(), node, right));
         } else {
-            rightHeight = node.getRight().getHeight();
+            split(right, pivot, parts);
+            parts.setLeft(join(left, node, parts.getLeft()));
         }
+    }
 
-        node.setHeight(Math.max(leftHeight, rightHeight) + 1);
-        node.setBalanceFactor(leftHeight - rightHeight);
-        return node;
+    /**
+     * Joins two subtrees under a middle node, descending the taller one until
+     * the heights are close and rebalancing back up
+     *
+     * @param left
+     *            subtree of data less than mid
+     * @param mid
+     *            node whose children get replaced
+     * @param right
+     *            subtree of data greater than mid
+     * @return AVLNode root of the joined subtree
+     */
+    private AVLNode<T> join(AVLNode<T> left, AVLNode<T> mid,
+            AVLNode<T> right) {
+        if (height(left) > height(right) + 1) {
+            left.setRight(join(left.getRight(), mid, right));
+            return balance(left);
+        } else if (height(right) > height(left) + 1) {
+            right.setLeft(join(left, mid, right.getLeft()));
+            return balance(right);
+        }
+        mid.setLeft(left);
+        mid.setRight(right);
+        update(mid);
+        return mid;
+    }
 
+    /**
+     * Joins two subtrees with no middle node, using the largest node of left
+     * as the middle
+     *
+     * @param left
+     *            subtree of data less than everything in right
+     * @param right
+     *            subtree of data greater than everything in left
+     * @return AVLNode root of the joined subtree
+     */
+    private AVLNode<T> join(AVLNode<T> left, AVLNode<T> right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        }
+        AVLNode<T> max = left;
+        while (max.getRight() != null) {
+            max = max.getRight();
+        }
+        return join(removeMax(left), max, right);
     }
 
-    @Override
-    public T remove(T data) {
-        T removed;
-        if (root == null) {
+    /**
+     * Removes the largest node below node
+     *
+     * @param node
+     *            node we're currently at
+     * @return AVLNode new root of this subtree
+     */
+    private AVLNode<T> removeMax(AVLNode<T> node) {
+        if (node.getRight() == null) {
+            return node.getLeft();
+        }
+        node.setRight(removeMax(node.getRight()));
+        return balance(node);
+    }
 
-            throw new java.util.NoSuchElementException(
-                    "Element is not in AVL cannot be removed");
+    /**
+     * Adds every element of data to the tree. The batch is sorted and merged
+     * into the tree in one pass, so heights and balance factors are fixed up
+     * once per touched path instead of once per element. The tree ends up
+     * holding the same data as if each element had been added in turn, though
+     * its shape may differ. A merge of more than PARALLEL_THRESHOLD elements
+     * in all is split across the common ForkJoinPool; smaller ones run on
+     * the calling thread.
+     *
+     * @param data
+     *            the data to add
+     * @return int how many elements were not already in the tree
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null
+     */
+    public int addAll(Collection<? extends T> data) {
+        AVLNode<T> batch = sortedBatch(data);
+        int before = size;
+        if (batch != null) {
+            root = combine(SetOperation.UNION, root, batch);
+            size = sizeOf(root);
+            modCount++;
         }
-        if (data == null) {
+        return size - before;
+    }
 
-            throw new IllegalArgumentException("Data given is null");
+    /**
+     * Removes every element of data that is in the tree. The batch is sorted
+     * and merged into the tree in one pass, so heights and balance factors
+     * are fixed up once per touched path instead of once per element, and
+     * large merges run in parallel the same way as addAll. Unlike remove,
+     * data that is not in the tree is skipped.
+     *
+     * @param data
+     *            the data to remove
+     * @return int how many elements were removed
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null
+     */
+    public int removeAll(Collection<? extends T> data) {
+        AVLNode<T> batch = sortedBatch(data);
+        int before = size;
+        if (batch != null && root != null) {
+            root = combine(SetOperation.DIFFERENCE, root, batch);
+            size = sizeOf(root);
+            modCount++;
         }
+        return before - size;
+    }
 
-        if (root.getData().equals(data)) {
-            size--;
-            AVLNode<T> myNode = root;
-            if (myNode.getLeft() != null && myNode.getRight() != null) {
-                // has two children
-                // //System.out.println("two children");
-                AVLNode<T> previous = myNode.getRight();
-                AVLNode<T> current = myNode.getRight();
-                if (current.getLeft() == null) {
-                    root = (current);
-                    current.setLeft(myNode.getLeft());
-                } else {
-                    while (current.getLeft() != null) {
-                        previous = current;
-                        current = current.getLeft();
-                    }
-                    current.setLeft(myNode.getLeft());
-                    current.setRight(myNode.getRight());
-                    previous.setLeft(null);
-                    root = (current);
-                }
+    /**
+     * Sorts a batch, drops duplicates and builds it into a balanced subtree
+     *
+     * @param data
+     *            the batch
+     * @return AVLNode root of a subtree holding the batch
+     */
+    @SuppressWarnings("unchecked")
+    private AVLNode<T> sortedBatch(Collection<? extends T> data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data entered is null");
+        }
+        Object[] items = data.toArray();
+        for (Object item : items) {
+            if (item == null) {
+                throw new IllegalArgumentException("data contains null");
+            }
+        }
+        if (metrics == null) {
+            Arrays.sort(items, (Comparator<Object>) comparator);
+        } else {
+            // through compare, so the sort's comparisons are counted too
+            Arrays.sort(items, (x, y) -> compare((T) x, (T) y));
+        }
+        int unique = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (unique == 0
+                    || compare((T) items[unique - 1], (T) items[i]) != 0) {
+                items[unique++] = items[i];
+            }
+        }
+        return build(items, 0, unique - 1);
+    }
 
-                removed = myNode.getData();
-            } else if (myNode.getLeft() == null && myNode.getRight() == null) {
-                // node is a leaf simply remove it
+    /**
+     * Returns a new tree holding the data in either a or b. Both trees are
+     * left unchanged, which means both are copied in full first: this takes
+     * Theta(n + m) time and allocation for the copies on top of the
+     * O(m log(n / m + 1)) merge for trees of sizes m &lt;= n. Large
+     * subproblems run in parallel on the common ForkJoinPool. Where both
+     * trees hold equal data, a's copy is kept. To merge a small tree into a
+     * large one without the copies, use {@link #unionWith(AVL)}.
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param a
+     *            the first tree
+     * @param b
+     *            the second tree
+     * @return AVL the union of a and b
+     * @throws IllegalArgumentException
+     *             if a or b is null, or they are not ordered the same way
+     */
+    public static <T extends Comparable<? super T>> AVL<T> union(AVL<T> a,
+            AVL<T> b) {
+        return combine(SetOperation.UNION, a, b);
+    }
 
-                root = null;
-                removed = myNode.getData();
-            } else if (myNode.getLeft() != null) {
-                // only a left branch simply replace
-                root = (myNode.getLeft());
-                removed = myNode.getData();
-            } else {
-                // only right branch simply replace
-                root = (myNode.getRight());
-                removed = myNode.getData();
+    /**
+     * Returns a new tree holding the data in both a and b, with a's copy of
+     * each. Both trees are left unchanged. Like {@link #union(AVL, AVL)} it
+     * copies both trees first, so it takes Theta(n + m) time;
+     * {@link #intersectWith(AVL)} does not copy.
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param a
+     *            the first tree
+     * @param b
+     *            the second tree
+     * @return AVL the intersection of a and b
+     * @throws IllegalArgumentException
+     *             if a or b is null, or they are not ordered the same way
+     */
+    public static <T extends Comparable<? super T>> AVL<T> intersection(
+            AVL<T> a, AVL<T> b) {
+        return combine(SetOperation.INTERSECTION, a, b);
+    }
+
+    /**
+     * Returns a new tree holding the data in a that is not in b. Both trees
+     * are left unchanged. Like {@link #union(AVL, AVL)} it copies both trees
+     * first, so it takes Theta(n + m) time; {@link #subtract(AVL)} does not
+     * copy.
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param a
+     *            the tree being subtracted from
+     * @param b
+     *            the tree being subtracted
+     * @return AVL the difference of a and b
+     * @throws IllegalArgumentException
+     *             if a or b is null, or they are not ordered the same way
+     */
+    public static <T extends Comparable<? super T>> AVL<T> difference(
+            AVL<T> a, AVL<T> b) {
+        return combine(SetOperation.DIFFERENCE, a, b);
+    }
+
+    /**
+     * Adds the data in other to this tree, moving other's nodes in instead
+     * of copying them, and leaves other empty. Where both trees hold equal
+     * data, this tree's copy is kept. Nothing is copied, so merging m
+     * elements into a tree of n takes O(m log(n / m + 1)) work, with large
+     * subproblems run in parallel on the common ForkJoinPool.
+     *
+     * @param other
+     *            the tree to merge in, emptied
+     * @throws IllegalArgumentException
+     *             if other is null or not ordered the same way as this tree
+     */
+    public void unionWith(AVL<T> other) {
+        combineWith(SetOperation.UNION, other);
+    }
+
+    /**
+     * Removes the data in this tree that is not in other, and leaves other
+     * empty. Nodes are reused, not copied, the same as
+     * {@link #unionWith(AVL)}.
+     *
+     * @param other
+     *            the tree to intersect with, emptied
+     * @throws IllegalArgumentException
+     *             if other is null or not ordered the same way as this tree
+     */
+    public void intersectWith(AVL<T> other) {
+        combineWith(SetOperation.INTERSECTION, other);
+    }
+
+    /**
+     * Removes the data in other from this tree, and leaves other empty.
+     * Nodes are reused, not copied, the same as {@link #unionWith(AVL)}.
+     *
+     * @param other
+     *            the tree whose data is removed, emptied
+     * @throws IllegalArgumentException
+     *             if other is null or not ordered the same way as this tree
+     */
+    public void subtract(AVL<T> other) {
+        combineWith(SetOperation.DIFFERENCE, other);
+    }
+
+    /**
+     * Runs a set operation with this tree as the first input and other as
+     * the second, taking both apart to build the result in place
+     *
+     * @param operation
+     *            the operation to run
+     * @param other
+     *            the second tree, emptied
+     */
+    private void combineWith(SetOperation operation, AVL<T> other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Tree given is null");
+        }
+        if (other == this) {
+            if (operation == SetOperation.DIFFERENCE) {
+                clear();
             }
-        } else {
+            return;
+        }
+        checkSameOrder(this, other);
+        root = combine(operation, root, other.root);
+        size = sizeOf(root);
+        modCount++;
+        other.clear();
+    }
 
-            removed = remove(root, data);
+    /**
+     * Runs a set operation on copies of two trees
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param operation
+     *            the operation to run
+     * @param a
+     *            the first tree
+     * @param b
+     *            the second tree
+     * @return AVL a new tree holding the result
+     */
+    private static <T extends Comparable<? super T>> AVL<T> combine(
+            SetOperation operation, AVL<T> a, AVL<T> b) {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("Tree given is null");
         }
+        checkSameOrder(a, b);
+        AVL<T> result = new AVL<T>(a.comparator);
+        result.root = result.combine(operation, result.copy(a.root),
+                result.copy(b.root));
+        result.size = result.sizeOf(result.root);
+        return result;
+    }
 
-        calcHeight(root);
+    /**
+     * Checks two trees can be combined, which needs them in the same order
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param a
+     *            the first tree
+     * @param b
+     *            the second tree
+     * @throws IllegalArgumentException
+     *             if the trees are not ordered by equal comparators
+     */
+    static <T extends Comparable<? super T>> void checkSameOrder(
+            AVL<T> a, AVL<T> b) {
+        if (!Objects.equals(a.comparator, b.comparator)) {
+            throw new IllegalArgumentException(
+                    "Trees are not ordered the same way");
+        }
+    }
 
-        root = balanceTree(root);
+    /**
+     * Runs a set operation on two subtrees, taking their nodes apart to build
+     * the result. Each half is handled recursively, and halves above
+     * PARALLEL_THRESHOLD are forked. A fork from a thread outside any pool
+     * goes to the common pool, so the caller's thread works on one half
+     * while a pool worker can take the other.
+     *
+     * @param operation
+     *            the operation to run
+     * @param a
+     *            the first subtree
+     * @param b
+     *            the second subtree, ignored for COPY
+     * @return AVLNode root of the result
+     */
+    private AVLNode<T> combine(SetOperation operation, AVLNode<T> a,
+            AVLNode<T> b) {
+        if (operation == SetOperation.COPY) {
+            return copy(a);
+        }
+        if (a == null || b == null) {
+            if (operation == SetOperation.UNION) {
+                return a == null ? b : a;
+            }
+            return operation == SetOperation.DIFFERENCE ? a : null;
+        }
+        boolean parallel = sizeOf(a) + sizeOf(b) > PARALLEL_THRESHOLD;
+
+        // split one tree around the root of the other, then recurse on the
+        // two sides; difference splits a so b's root can be dropped
+        AVLNode<T> pivot = operation == SetOperation.DIFFERENCE ? b : a;
+        AVLNode<T> parts = new AVLNode<T>(null);
+        split(operation == SetOperation.DIFFERENCE ? a : b, pivot.getData(),
+                parts);
+        boolean found = parts.getData() != null;
+        AVLNode<T> leftA;
+        AVLNode<T> rightA;
+        AVLNode<T> leftB;
+        AVLNode<T> rightB;
+        if (operation == SetOperation.DIFFERENCE) {
+            leftA = parts.getLeft();
+            rightA = parts.getRight();
+            leftB = pivot.getLeft();
+            rightB = pivot.getRight();
+        } else {
+            leftA = pivot.getLeft();
+            rightA = pivot.getRight();
+            leftB = parts.getLeft();
+            rightB = parts.getRight();
+        }
 
-        calcHeight(root);
-        return removed;
+        AVLNode<T> left;
+        AVLNode<T> right;
+        if (parallel) {
+            SetTask task = new SetTask(operation, leftA, leftB);
+            task.fork();
+            right = combine(operation, rightA, rightB);
+            left = task.join();
+        } else {
+            left = combine(operation, leftA, leftB);
+            right = combine(operation, rightA, rightB);
+        }
 
+        if (operation == SetOperation.UNION
+                || (operation == SetOperation.INTERSECTION && found)) {
+            return join(left, pivot, right);
+        }
+        return join(left, right);
     }
 
     /**
+     * Copies a subtree, forking halves above PARALLEL_THRESHOLD
+     *
      * @param node
-     *            node we're currently at
-     * @param data
-     *            data being removed
-     * @return T data that was removed
+     *            root of the subtree being copied
+     * @return AVLNode root of the copy
      */
-    private T remove(AVLNode<T> node, T data) {
-        int i = node.getData().compareTo(data);
+    private AVLNode<T> copy(AVLNode<T> node) {
+        if (node == null) {
+            return null;
+        }
+        AVLNode<T> copy = new AVLNode<T>(node.getData());
+        if (node.getSize() > PARALLEL_THRESHOLD) {
+            SetTask task = new SetTask(SetOperation.COPY, node.getLeft(),
+                    null);
+            task.fork();
+            copy.setRight(copy(node.getRight()));
+            copy.setLeft(task.join());
+        } else {
+            copy.setLeft(copy(node.getLeft()));
+            copy.setRight(copy(node.getRight()));
+        }
+        update(copy);
+        return copy;
+    }
 
-        if (i < 0) {
-            // data is greater than node data
+    /**
+     * Operations that SetTask can run.
+     */
+    private enum SetOperation {
+        COPY, UNION, INTERSECTION, DIFFERENCE
+    }
 
-            if (node.getRight() == null) {
+    /**
+     * Runs one set operation on a pair of subtrees as a ForkJoin task.
+     */
+    private final class SetTask extends RecursiveTask<AVLNode<T>> {
+        private static final long serialVersionUID = 1L;
+        private final SetOperation operation;
+        private final AVLNode<T> a;
+        private final AVLNode<T> b;
+
+        /**
+         * @param operation
+         *            the operation to run
+         * @param a
+         *            the first subtree
+         * @param b
+         *            the second subtree
+         */
+        SetTask(SetOperation operation, AVLNode<T> a, AVLNode<T> b) {
+            this.operation = operation;
+            this.a = a;
+            this.b = b;
+        }
 
-                throw new java.util.NoSuchElementException(
-                        "Data is not in AVL cannot be removed");
-            } else {
-                if (node.getRight().getData().equals(data)) {
-                    size--;
-                    // found our node
-                    AVLNode<T> myNode = node.getRight();
-                    if (myNode.getLeft() != null && myNode.getRight() != null) {
-
-                        // has two children
-                        AVLNode<T> previous = myNode.getRight();
-                        AVLNode<T> current = myNode.getRight();
-                        if (current.getLeft() == null) {
-                            node.setRight(current);
-                            current.setLeft(myNode.getLeft());
-                        } else {
-                            while (current.getLeft() != null) {
-                                previous = current;
-                                current = current.getLeft();
-                            }
-                            AVLNode<T> currentRight = current;
-                            while (currentRight.getRight() != null) {
-                                currentRight = currentRight.getRight();
-                            }
-
-                            current.setLeft(myNode.getLeft());
-                            currentRight.setRight(myNode.getRight());
-                            previous.setLeft(null);
-                            node.setRight(current);
-                        }
-                        return myNode.getData();
-
-                    } else if (myNode.getLeft() == null
-                            && myNode.getRight() == null) {
-
-                        // node is a leaf simply remove it
-                        node.setRight(null);
-                        return myNode.getData();
-                    } else if (myNode.getLeft() != null) {
-                        // only a left branch simply replace
-
-                        node.setRight(myNode.getLeft());
-                        return myNode.getData();
-                    } else {
-                        // only right branch simply replace
-
-                        node.setRight(myNode.getRight());
-                        return myNode.getData();
-                    }
-                } else {
-                    return remove(node.getRight(), data);
-                }
-            }
+        @Override
+        protected AVLNode<T> compute() {
+            return combine(operation, a, b);
+        }
+    }
 
-        } else {
-            // data less than node data
-            if (node.getLeft() == null) {
+    /**
+     * The result of splitting a tree around a pivot.
+     *
+     * @param <T>
+     *            the type of data in the trees
+     */
+    public static final class Split<T extends Comparable<? super T>> {
+        private final AVL<T> less;
+        private final T pivot;
+        private final AVL<T> greater;
+
+        /**
+         * @param less
+         *            tree of the data less than the pivot
+         * @param pivot
+         *            data equal to the pivot, or null
+         * @param greater
+         *            tree of the data greater than the pivot
+         */
+        private Split(AVL<T> less, T pivot, AVL<T> greater) {
+            this.less = less;
+            this.pivot = pivot;
+            this.greater = greater;
+        }
 
-                throw new java.util.NoSuchElementException(
-                        "Data is not in AVL cannot be removed");
-            } else {
-                if (node.getLeft().getData().equals(data)) {
-                    size--;
-                    // found our node
-                    AVLNode<T> myNode = node.getLeft();
-                    if (myNode.getLeft() != null && myNode.getRight() != null) {
-                        // has two children
-                        // //System.out.println("two children");
-                        AVLNode<T> previous = myNode.getRight();
-                        AVLNode<T> current = myNode.getRight();
-                        if (current.getLeft() == null) {
-                            node.setLeft(current);
-                            current.setLeft(myNode.getLeft());
-                        } else {
-                            while (current.getLeft() != null) {
-                                previous = current;
-                                current = current.getLeft();
-                            }
-                            current.setLeft(myNode.getLeft());
-                            current.setRight(myNode.getRight());
-                            previous.setLeft(null);
-                            node.setLeft(current);
-                        }
-
-                        return myNode.getData();
-                    } else if (myNode.getLeft() == null
-                            && myNode.getRight() == null) {
-                        // node is a leaf simply remove it
-
-                        node.setLeft(null);
-                        return myNode.getData();
-                    } else if (myNode.getLeft() != null) {
-                        // only a left branch simply replace
-                        node.setLeft(myNode.getLeft());
-                        return myNode.getData();
-                    } else {
-                        // only right branch simply replace
-                        node.setLeft(myNode.getRight());
-                        return myNode.getData();
-                    }
-                } else {
-                    return remove(node.getLeft(), data);
-                }
-            }
+        /**
+         * @return AVL tree of the data less than the pivot
+         */
+        public AVL<T> getLess() {
+            return less;
+        }
+
+        /**
+         * @return T the data that was equal to the pivot, or null if there
+         *         was none
+         */
+        public T getPivot() {
+            return pivot;
+        }
+
+        /**
+         * @return AVL tree of the data greater than the pivot
+         */
+        public AVL<T> getGreater() {
+            return greater;
         }
     }
 
@@ -528,64 +1454,274 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
         if (data == null) {
             throw new IllegalArgumentException("Data entered is null");
         }
-        if (root == null) {
-            throw new java.util.NoSuchElementException("Data is not in AVL");
-        }
-        AVLNode<T> dataNode = find(root, data);
+        AVLNode<T> dataNode = find(data, AVLMetricsListener.Operation.GET);
         if (dataNode == null) {
             // data was not found
             throw new java.util.NoSuchElementException("Data is not in AVL");
         }
-        return dataNode.getData();
-
+        return dataNode.getData();
+
+    }
+
+    /**
+     * Walks down from the root looking for data, one comparison per level
+     *
+     * @param data
+     *            data being found
+     * @return AVLNode holding data, or null if it is not in the tree
+     */
+    private AVLNode<T> find(T data) {
+        AVLNode<T> node = root;
+        while (node != null) {
+            int i = compare(data, node.getData());
+            if (i == 0) {
+                return node;
+            }
+            node = i < 0 ? node.getLeft() : node.getRight();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean contains(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        return find(data, AVLMetricsListener.Operation.CONTAINS) != null;
+    }
+
+    /**
+     * Finds data, reporting to the metrics listener if there is one
+     *
+     * @param data
+     *            data being found
+     * @param operation
+     *            operation the find is for
+     * @return AVLNode holding data, or null if it is not in the tree
+     */
+    private AVLNode<T> find(T data, AVLMetricsListener.Operation operation) {
+        AVLMetricsListener listener = metrics;
+        if (listener == null) {
+            return find(data);
+        }
+        long before = comparisons.sum();
+        long start = System.nanoTime();
+        AVLNode<T> node = find(data);
+        long nanos = System.nanoTime() - start;
+        int path = (int) (comparisons.sum() - before);
+        listener.completed(operation, path, path, nanos);
+        return node;
+    }
+
+    /**
+     * Gets the smallest data in the tree.
+     *
+     * @return T the smallest data
+     * @throws java.util.NoSuchElementException
+     *             if the tree is empty
+     */
+    public T first() {
+        if (root == null) {
+            throw new NoSuchElementException("AVL is empty");
+        }
+        AVLNode<T> node = root;
+        while (node.getLeft() != null) {
+            node = node.getLeft();
+        }
+        return node.getData();
+    }
+
+    /**
+     * Gets the largest data in the tree.
+     *
+     * @return T the largest data
+     * @throws java.util.NoSuchElementException
+     *             if the tree is empty
+     */
+    public T last() {
+        if (root == null) {
+            throw new NoSuchElementException("AVL is empty");
+        }
+        AVLNode<T> node = root;
+        while (node.getRight() != null) {
+            node = node.getRight();
+        }
+        return node.getData();
+    }
+
+    /**
+     * Gets the largest data in the tree less than or equal to data.
+     *
+     * @param data
+     *            data being searched for
+     * @return T the floor of data, or null if there is none
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public T floor(T data) {
+        return nearest(data, true, true);
+    }
+
+    /**
+     * Gets the smallest data in the tree greater than or equal to data.
+     *
+     * @param data
+     *            data being searched for
+     * @return T the ceiling of data, or null if there is none
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public T ceiling(T data) {
+        return nearest(data, false, true);
+    }
+
+    /**
+     * Gets the largest data in the tree strictly less than data.
+     *
+     * @param data
+     *            data being searched for
+     * @return T the data just below data, or null if there is none
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public T lower(T data) {
+        return nearest(data, true, false);
+    }
+
+    /**
+     * Gets the smallest data in the tree strictly greater than data.
+     *
+     * @param data
+     *            data being searched for
+     * @return T the data just above data, or null if there is none
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public T higher(T data) {
+        return nearest(data, false, false);
+    }
+
+    /**
+     * Finds the closest data on one side of data in a single descent
+     *
+     * @param data
+     *            data being searched for
+     * @param below
+     *            whether to look below data rather than above it
+     * @param inclusive
+     *            whether data itself counts as a match
+     * @return T the closest match, or null if there is none
+     */
+    private T nearest(T data, boolean below, boolean inclusive) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        T best = null;
+        AVLNode<T> node = root;
+        while (node != null) {
+            int i = compare(data, node.getData());
+            if (i == 0 && inclusive) {
+                return node.getData();
+            }
+            if (below ? i > 0 : i < 0) {
+                best = node.getData();
+                node = below ? node.getRight() : node.getLeft();
+            } else {
+                node = below ? node.getLeft() : node.getRight();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the data in the tree that is smaller than the given data, which
+     * is also the index data has or would have in the inorder traversal.
+     *
+     * @param data
+     *            data being ranked, does not have to be in the tree
+     * @return int number of elements less than data
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public int rank(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        return countBelow(data, false);
     }
 
     /**
-     * @param node
-     *            node we're currently at
-     * @param data
-     *            data being found
-     * @return AVLNode of nodes
+     * Gets the data at an index of the inorder traversal, so select(0) is the
+     * smallest and select(size() - 1) the largest.
+     *
+     * @param index
+     *            index of the data wanted
+     * @return T data with exactly index elements smaller than it
+     * @throws IndexOutOfBoundsException
+     *             if index is negative or not less than size()
      */
-    private AVLNode<T> find(AVLNode<T> node, T data) {
-        int i = node.getData().compareTo(data);
-
-        if (i == 0) {
-            return node;
+    public T select(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index
+                    + " is out of bounds for size " + size);
         }
-        if (i < 0) {
-            // data is greater than node data
-            if (node.getRight() == null) {
-                return null;
-            } else {
-                return find(node.getRight(), data);
-            }
-
-        } else {
-            // data less than node data
-            if (node.getLeft() == null) {
-                return null;
+        AVLNode<T> node = root;
+        while (true) {
+            int leftSize = sizeOf(node.getLeft());
+            if (index < leftSize) {
+                node = node.getLeft();
+            } else if (index == leftSize) {
+                return node.getData();
             } else {
-                return find(node.getLeft(), data);
+                index -= leftSize + 1;
+                node = node.getRight();
             }
         }
-
     }
 
-    @Override
-    public boolean contains(T data) {
-        if (root == null) {
-            throw new java.util.NoSuchElementException(
-                    "AVL does not contain that element");
-        }
-        if (data == null) {
-            throw new IllegalArgumentException("Data given is null");
+    /**
+     * Counts the data in the tree between lo and hi, both inclusive.
+     *
+     * @param lo
+     *            smallest data counted
+     * @param hi
+     *            largest data counted
+     * @return int number of elements in [lo, hi], 0 if lo is greater than hi
+     * @throws IllegalArgumentException
+     *             if lo or hi is null
+     */
+    public int rangeCount(T lo, T hi) {
+        if (lo == null || hi == null) {
+            throw new IllegalArgumentException("Bound given is null");
         }
-        if (find(root, data) == null) {
-            return false;
+        if (compare(lo, hi) > 0) {
+            return 0;
         }
-        return true;
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
 
+    /**
+     * Counts the data below a bound using subtree sizes, one node per level
+     *
+     * @param data
+     *            the bound
+     * @param inclusive
+     *            whether data equal to the bound is counted
+     * @return int number of elements below the bound
+     */
+    int countBelow(T data, boolean inclusive) {
+        int count = 0;
+        AVLNode<T> node = root;
+        while (node != null) {
+            int i = compare(data, node.getData());
+            if (i < 0 || (i == 0 && !inclusive)) {
+                node = node.getLeft();
+            } else {
+                count += sizeOf(node.getLeft()) + 1;
+                node = node.getRight();
+            }
+        }
+        return count;
     }
 
     @Override
@@ -595,7 +1731,7 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
 
     @Override
     public List<T> preorder() {
-        List<T> nodes = new ArrayList<T>();
+        List<T> nodes = new ArrayList<T>(size);
         return preorder(nodes, root);
     }
 
@@ -620,7 +1756,7 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
      * @return a postorder traversal of the tree, or an empty list
      */
     public List<T> postorder() {
-        List<T> nodes = new ArrayList<T>();
+        List<T> nodes = new ArrayList<T>(size);
         return postorder(nodes, root);
     }
 
@@ -643,7 +1779,7 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
 
     @Override
     public List<T> inorder() {
-        List<T> nodes = new ArrayList<T>();
+        List<T> nodes = new ArrayList<T>(size);
         return inorder(nodes, root);
     }
 
@@ -664,35 +1800,321 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
         return nodes;
     }
 
+    /**
+     * Gets the data in the tree in order, in a new array.
+     *
+     * @return Object[] the inorder traversal of the tree
+     * @see #inorder(Comparable[])
+     */
+    public Object[] toArray() {
+        return fill(Order.INORDER, new Object[size]);
+    }
+
+    /**
+     * Writes the inorder traversal of the tree into dest, starting at index
+     * 0. Every node's place in dest follows from the subtree sizes, so in a
+     * tree bigger than PARALLEL_THRESHOLD each subtree is written to its own
+     * range of dest in parallel on the common ForkJoinPool. Anything in dest
+     * past the first size() elements is left alone.
+     *
+     * @param dest
+     *            array to write to, at least size() long
+     * @return T[] dest
+     * @throws IllegalArgumentException
+     *             if dest is null or shorter than size()
+     */
+    public T[] inorder(T[] dest) {
+        return fill(Order.INORDER, checkDest(dest));
+    }
+
+    /**
+     * Writes the preorder traversal of the tree into dest, the same way as
+     * inorder(T[]).
+     *
+     * @param dest
+     *            array to write to, at least size() long
+     * @return T[] dest
+     * @throws IllegalArgumentException
+     *             if dest is null or shorter than size()
+     */
+    public T[] preorder(T[] dest) {
+        return fill(Order.PREORDER, checkDest(dest));
+    }
+
+    /**
+     * Writes the postorder traversal of the tree into dest, the same way as
+     * inorder(T[]).
+     *
+     * @param dest
+     *            array to write to, at least size() long
+     * @return T[] dest
+     * @throws IllegalArgumentException
+     *             if dest is null or shorter than size()
+     */
+    public T[] postorder(T[] dest) {
+        return fill(Order.POSTORDER, checkDest(dest));
+    }
+
+    /**
+     * @param dest
+     *            array passed in by the caller
+     * @return T[] dest, once checked to be long enough
+     */
+    private T[] checkDest(T[] dest) {
+        if (dest == null) {
+            throw new IllegalArgumentException("Array given is null");
+        }
+        if (dest.length < size) {
+            throw new IllegalArgumentException("Array given is too short");
+        }
+        return dest;
+    }
+
+    /**
+     * Writes a traversal of the whole tree into dest, in parallel if the
+     * tree is big enough
+     *
+     * @param <E>
+     *            the type of array
+     * @param order
+     *            the traversal
+     * @param dest
+     *            array at least size long
+     * @return E[] dest
+     */
+    private <E> E[] fill(Order order, E[] dest) {
+        fill(order, root, dest, 0);
+        return dest;
+    }
+
+    /**
+     * Writes a traversal of a subtree into dest. The root's index and the
+     * start of each child's range come from the left subtree's size, so the
+     * two children can be written at the same time. Subtrees above
+     * PARALLEL_THRESHOLD fork their left child, to the common pool when
+     * called from outside any pool.
+     *
+     * @param order
+     *            the traversal
+     * @param node
+     *            root of the subtree
+     * @param dest
+     *            array being written
+     * @param offset
+     *            index of the subtree's first element in dest
+     */
+    private void fill(Order order, AVLNode<T> node, Object[] dest,
+            int offset) {
+        if (node == null) {
+            return;
+        }
+        int leftSize = sizeOf(node.getLeft());
+        int leftOffset = order == Order.PREORDER ? offset + 1 : offset;
+        int rightOffset = order == Order.POSTORDER ? offset + leftSize
+                : offset + leftSize + 1;
+        if (order == Order.PREORDER) {
+            dest[offset] = node.getData();
+        } else if (order == Order.INORDER) {
+            dest[offset + leftSize] = node.getData();
+        } else {
+            dest[offset + node.getSize() - 1] = node.getData();
+        }
+        if (node.getSize() > PARALLEL_THRESHOLD) {
+            FillTask task = new FillTask(order, node.getLeft(), dest,
+                    leftOffset);
+            task.fork();
+            fill(order, node.getRight(), dest, rightOffset);
+            task.join();
+        } else {
+            fill(order, node.getLeft(), dest, leftOffset);
+            fill(order, node.getRight(), dest, rightOffset);
+        }
+    }
+
+    /**
+     * The traversals fill can write.
+     */
+    private enum Order {
+        PREORDER, INORDER, POSTORDER
+    }
+
+    /**
+     * Writes the traversal of one subtree as a ForkJoin task.
+     */
+    private final class FillTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Order order;
+        private final AVLNode<T> node;
+        private final Object[] dest;
+        private final int offset;
+
+        /**
+         * @param order
+         *            the traversal
+         * @param node
+         *            root of the subtree
+         * @param dest
+         *            array being written
+         * @param offset
+         *            index of the subtree's first element in dest
+         */
+        FillTask(Order order, AVLNode<T> node, Object[] dest, int offset) {
+            this.order = order;
+            this.node = node;
+            this.dest = dest;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            fill(order, node, dest, offset);
+        }
+    }
+
     @Override
     public List<T> levelorder() {
-        List<T> listData = new LinkedList<T>();
-        List<AVLNode<T>> listNodes = new LinkedList<AVLNode<T>>();
-        listNodes.add(root);
-        while (!listNodes.isEmpty()) {
+        List<T> nodes = new ArrayList<T>(size);
+        levelorder((data, level) -> nodes.add(data));
+        return nodes;
+    }
 
-            AVLNode<T> current = listNodes.remove(0);
+    /**
+     * Streams the tree in level order without building a list. The visitor
+     * gets each piece of data along with its level, the root being level 0,
+     * and all of one level is visited before the next.
+     *
+     * @param visitor
+     *            called with the data and level of each node in level order
+     * @throws IllegalArgumentException
+     *             if visitor is null
+     * @throws ConcurrentModificationException
+     *             if the visitor changes the tree
+     */
+    public void levelorder(ObjIntConsumer<? super T> visitor) {
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor given is null");
+        }
+        if (root == null) {
+            return;
+        }
+        int expectedModCount = modCount;
+        NodeQueue<T> queue = new NodeQueue<T>(maxWidth());
+        queue.add(root);
+        for (int level = 0; !queue.isEmpty(); level++) {
+            for (int count = queue.size(); count > 0; count--) {
+                AVLNode<T> current = queue.remove();
+                visitor.accept(current.getData(), level);
+                // the queue is sized for the tree as it was, and may hold
+                // nodes a rotation has since moved
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (current.getLeft() != null) {
+                    queue.add(current.getLeft());
+                }
+                if (current.getRight() != null) {
+                    queue.add(current.getRight());
+                }
+            }
+        }
+    }
 
-            listData.add(current.getData());
+    /**
+     * Bounds how many nodes a level order traversal can have queued at once.
+     * The queue never holds a node and its ancestor together, so it can't
+     * hold more nodes than the tree has leaves.
+     *
+     * @return int most nodes ever waiting in the queue
+     */
+    private int maxWidth() {
+        int leaves = (size + 1) / 2;
+        if (root != null && height() < 30) {
+            return Math.min(leaves, 1 << height());
+        }
+        return leaves;
+    }
 
-            if (current.getLeft() != null) {
+    /**
+     * Ring buffer of nodes used for level order traversals. It doubles when
+     * full, so a queue presized with maxWidth never grows and one that
+     * starts small only grows as wide as the levels actually reached.
+     */
+    private static final class NodeQueue<T extends Comparable<? super T>> {
+        private AVLNode<T>[] nodes;
+        private int mask;
+        private int head;
+        private int tail;
+
+        /**
+         * Creates a queue that can hold at least capacity nodes before it
+         * has to grow
+         *
+         * @param capacity
+         *            nodes to make room for
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        NodeQueue(int capacity) {
+            int length = capacity <= 1 ? 1
+                    : Integer.highestOneBit(capacity - 1) << 1;
+            nodes = (AVLNode<T>[]) new AVLNode[length];
+            mask = length - 1;
+        }
 
-                listNodes.add(current.getLeft());
+        /**
+         * @param node
+         *            node added to the back of the queue
+         */
+        void add(AVLNode<T> node) {
+            if (size() == nodes.length) {
+                grow();
             }
-            if (current.getRight() != null) {
+            nodes[tail++ & mask] = node;
+        }
 
-                listNodes.add(current.getRight());
+        /**
+         * Doubles the buffer, moving the queued nodes to its start
+         */
+        private void grow() {
+            int count = size();
+            int start = head & mask;
+            AVLNode<T>[] grown = Arrays.copyOfRange(nodes, start,
+                    start + count * 2);
+            System.arraycopy(nodes, 0, grown, count - start, start);
+            nodes = grown;
+            mask = nodes.length - 1;
+            head = 0;
+            tail = count;
+        }
 
-            }
+        /**
+         * @return AVLNode node taken off the front of the queue
+         */
+        AVLNode<T> remove() {
+            AVLNode<T> node = nodes[head & mask];
+            nodes[head++ & mask] = null;
+            return node;
         }
-        return listData;
 
+        /**
+         * @return int number of nodes in the queue
+         */
+        int size() {
+            return tail - head;
+        }
+
+        /**
+         * @return boolean whether the queue is empty
+         */
+        boolean isEmpty() {
+            return head == tail;
+        }
     }
 
     @Override
     public void clear() {
         root = null;
         size = 0;
+        modCount++;
     }
 
     @Override
@@ -703,6 +2125,34 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
         return root.getHeight();
     }
 
+    /**
+     * Installs a listener that is told about rotations, about every
+     * comparison, and about the cost of each add, remove, get and contains.
+     * The comparisons an add, remove, get or contains reports are the ones
+     * it made itself, counted as they happen. With no listener installed the
+     * tree records nothing, and setting null turns metrics back off.
+     * Batch and set operations compare and rotate in parallel, so the
+     * listener must be thread-safe; {@link AVLMetrics} is.
+     *
+     * @param listener
+     *            the listener, or null to turn metrics off
+     */
+    public void setMetricsListener(AVLMetricsListener listener) {
+        if (listener != null && comparisons == null) {
+            comparisons = new LongAdder();
+        }
+        metrics = listener;
+    }
+
+    /**
+     * Gets the listener set by setMetricsListener.
+     *
+     * @return AVLMetricsListener the listener, or null if metrics are off
+     */
+    public AVLMetricsListener getMetricsListener() {
+        return metrics;
+    }
+
     /**
      * Compares two AVLs and checks to see if the trees are the same. If the
      * trees have the same data in a different arrangement, this method should
@@ -726,9 +2176,28 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
             return false;
         }
         AVL<T> otherAVL = (AVL<T>) other;
+        // equal trees always have the same size and digest, so most unequal
+        // trees are turned away without walking them
+        if (size != otherAVL.size
+                || digestOf(root) != otherAVL.digestOf(otherAVL.root)) {
+            return false;
+        }
         return equals(root, otherAVL.getRoot());
     }
 
+    /**
+     * Returns a hash code built from the data and shape of the tree, in O(1)
+     * since every node keeps the digest of its subtree. Trees that are equal
+     * have equal hash codes.
+     *
+     * @return int hash code of the tree
+     */
+    @Override
+    public int hashCode() {
+        long digest = digestOf(root);
+        return (int) (digest ^ (digest >>> 32));
+    }
+
     /**
      * @param node
      *            our node
@@ -754,6 +2223,347 @@ public class AVL<T extends Comparable<? super T>> implements AVLInterface<T> {
 
     }
 
+    /**
+     * Returns a lazy inorder iterator over the tree.
+     *
+     * @return an inorder iterator
+     * @see #inorderIterator()
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return inorderIterator();
+    }
+
+    /**
+     * Returns an iterator that walks the tree inorder as it is consumed,
+     * keeping only the current path. It throws
+     * ConcurrentModificationException if the tree changes while in use.
+     *
+     * @return an inorder iterator
+     */
+    public Iterator<T> inorderIterator() {
+        return new InorderIterator(null, true, null, true, false);
+    }
+
+    /**
+     * Returns an iterator that walks the tree from largest to smallest, the
+     * reverse of inorderIterator().
+     *
+     * @return a reverse inorder iterator
+     */
+    public Iterator<T> descendingIterator() {
+        return new InorderIterator(null, true, null, true, true);
+    }
+
+    /**
+     * Returns an inorder iterator over part of the tree. Its remove() method
+     * removes the data it last returned from the tree.
+     *
+     * @param from
+     *            where to start, null to start at the end of the tree
+     * @param fromInclusive
+     *            whether data equal to from is returned
+     * @param to
+     *            where to stop, null to run to the end of the tree
+     * @param toInclusive
+     *            whether data equal to to is returned
+     * @param descending
+     *            whether to walk from largest to smallest
+     * @return an iterator over the data between from and to
+     */
+    Iterator<T> iterator(T from, boolean fromInclusive, T to,
+            boolean toInclusive, boolean descending) {
+        return new InorderIterator(from, fromInclusive, to, toInclusive,
+                descending);
+    }
+
+    /**
+     * Returns an iterator that walks the tree in preorder as it is consumed,
+     * keeping O(height) pending nodes. It throws
+     * ConcurrentModificationException if the tree changes while in use.
+     *
+     * @return a preorder iterator
+     */
+    public Iterator<T> preorderIterator() {
+        return new PreorderIterator();
+    }
+
+    /**
+     * Returns an iterator that walks the tree in postorder as it is consumed,
+     * keeping only the current path. It throws
+     * ConcurrentModificationException if the tree changes while in use.
+     *
+     * @return a postorder iterator
+     */
+    public Iterator<T> postorderIterator() {
+        return new PostorderIterator();
+    }
+
+    /**
+     * Returns an iterator that walks the tree in level order as it is
+     * consumed. Level order has to queue up the next level, so this keeps a
+     * ring buffer sized to the widest the tree can be rather than O(height).
+     * It throws ConcurrentModificationException if the tree changes while in
+     * use.
+     *
+     * @return a level order iterator
+     */
+    public Iterator<T> levelorderIterator() {
+        return new LevelorderIterator();
+    }
+
+    /**
+     * Base for the traversal iterators, holds a stack sized to the height of
+     * the tree and the fail fast check.
+     */
+    private abstract class TreeIterator implements Iterator<T> {
+        protected final AVLNode<T>[] stack;
+        protected int top;
+        protected int expectedModCount;
+
+        /**
+         * Creates an iterator with an empty stack
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected TreeIterator() {
+            stack = (AVLNode<T>[]) new AVLNode[height() + 1];
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0;
+        }
+
+        @Override
+        public T next() {
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more data in the AVL");
+            }
+            return advance().getData();
+        }
+
+        /**
+         * Fails fast if the tree changed since this iterator last touched it
+         */
+        protected void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        /**
+         * Pops the next node and sets up the stack for the one after it
+         *
+         * @return AVLNode next node in the traversal
+         */
+        protected abstract AVLNode<T> advance();
+    }
+
+    /**
+     * Inorder iterator, the stack holds the nodes whose near side is being
+     * visited. It can start partway through the tree, stop at a bound, walk
+     * backwards, and remove the data it last returned.
+     */
+    private class InorderIterator extends TreeIterator {
+        private final T to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private T lastReturned;
+
+        /**
+         * Creates an iterator starting at the first data past from
+         *
+         * @param from
+         *            where to start, null to start at the end of the tree
+         * @param fromInclusive
+         *            whether data equal to from is returned
+         * @param to
+         *            where to stop, null to run to the end of the tree
+         * @param toInclusive
+         *            whether data equal to to is returned
+         * @param descending
+         *            whether to walk from largest to smallest
+         */
+        InorderIterator(T from, boolean fromInclusive, T to,
+                boolean toInclusive, boolean descending) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            seek(from, fromInclusive);
+        }
+
+        /**
+         * Rebuilds the stack so the next node is the first one past from
+         *
+         * @param from
+         *            where to start, null to start at the end of the tree
+         * @param inclusive
+         *            whether data equal to from is returned
+         */
+        private void seek(T from, boolean inclusive) {
+            top = 0;
+            AVLNode<T> node = root;
+            while (node != null) {
+                int i = from == null ? 0 : compare(from, node.getData());
+                if (from == null || (descending ? i > 0 : i < 0)
+                        || (i == 0 && inclusive)) {
+                    stack[top++] = node;
+                    node = descending ? node.getRight() : node.getLeft();
+                } else {
+                    node = descending ? node.getLeft() : node.getRight();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (top == 0) {
+                return false;
+            }
+            if (to == null) {
+                return true;
+            }
+            int i = compare(stack[top - 1].getData(), to);
+            return descending ? i > 0 || (i == 0 && toInclusive)
+                    : i < 0 || (i == 0 && toInclusive);
+        }
+
+        @Override
+        protected AVLNode<T> advance() {
+            AVLNode<T> node = stack[--top];
+            AVLNode<T> next = descending ? node.getLeft() : node.getRight();
+            while (next != null) {
+                stack[top++] = next;
+                next = descending ? next.getRight() : next.getLeft();
+            }
+            lastReturned = node.getData();
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("next has not been called");
+            }
+            checkForComodification();
+            AVL.this.remove(lastReturned);
+            // removing never makes the tree taller, so the stack still fits
+            seek(lastReturned, false);
+            expectedModCount = modCount;
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Preorder iterator, the stack holds subtrees still to be visited.
+     */
+    private class PreorderIterator extends TreeIterator {
+
+        /**
+         * Creates an iterator starting at the root
+         */
+        PreorderIterator() {
+            if (root != null) {
+                stack[top++] = root;
+            }
+        }
+
+        @Override
+        protected AVLNode<T> advance() {
+            AVLNode<T> node = stack[--top];
+            if (node.getRight() != null) {
+                stack[top++] = node.getRight();
+            }
+            if (node.getLeft() != null) {
+                stack[top++] = node.getLeft();
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Postorder iterator, the stack holds the path to the next node.
+     */
+    private class PostorderIterator extends TreeIterator {
+
+        /**
+         * Creates an iterator starting at the first leaf
+         */
+        PostorderIterator() {
+            pushFirstLeaf(root);
+        }
+
+        /**
+         * @param node
+         *            node whose path down to its first postorder node gets
+         *            pushed
+         */
+        private void pushFirstLeaf(AVLNode<T> node) {
+            while (node != null) {
+                stack[top++] = node;
+                node = node.getLeft() != null ? node.getLeft()
+                        : node.getRight();
+            }
+        }
+
+        @Override
+        protected AVLNode<T> advance() {
+            AVLNode<T> node = stack[--top];
+            if (top > 0) {
+                AVLNode<T> parent = stack[top - 1];
+                if (parent.getLeft() == node) {
+                    pushFirstLeaf(parent.getRight());
+                }
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Level order iterator, nodes wait in a queue for their level. The queue
+     * starts small and grows with the levels reached, so an iterator that is
+     * only read a little way costs little.
+     */
+    private class LevelorderIterator implements Iterator<T> {
+        private final NodeQueue<T> queue = new NodeQueue<T>(
+                INITIAL_QUEUE_CAPACITY);
+        private final int expectedModCount = modCount;
+
+        /**
+         * Creates an iterator starting at the root
+         */
+        LevelorderIterator() {
+            if (root != null) {
+                queue.add(root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException("No more data in the AVL");
+            }
+            AVLNode<T> node = queue.remove();
+            if (node.getLeft() != null) {
+                queue.add(node.getLeft());
+            }
+            if (node.getRight() != null) {
+                queue.add(node.getRight());
+            }
+            return node.getData();
+        }
+    }
+
     @Override
     public AVLNode<T> getRoot() {
         // DO NOT EDIT THIS METHOD!
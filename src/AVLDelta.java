@@ -0,0 +1,411 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The difference between two AVL trees: the data added and the data removed
+ * going from one to the other. Applying the delta to a tree holding the same
+ * data as the first tree makes it hold the same data as the second, so a
+ * replica can be brought up to date by sending only what changed.
+ *
+ * diff walks both trees in order at once and skips any pair of subtrees that
+ * have the same size, the same 64-bit digest and equal data at their roots,
+ * which is every subtree the two trees still share when they grew from the
+ * same history. Replicas that have drifted apart by d changes are then
+ * compared in about O(d log n) time. Trees of the same data in different
+ * shapes share fewer subtrees, and in the worst case the walk visits every
+ * node.
+ *
+ * Skipping trusts the digest, which AVL.equals does not. Two subtrees with
+ * different data but the same size, root and digest are taken as equal, and
+ * the changes inside them are left out of the delta without any error. The
+ * digest is built from hashCode, so unequal keys with the same hash code in
+ * the same place always collide, for example "Aa" and "BB" as Strings;
+ * otherwise the chance is about 2^-64 per pair of subtrees compared. Where a
+ * missed change would be costly, diff(from, to, true) checks every key and
+ * skips nothing, at O(n + m) time.
+ *
+ * encode writes a delta with an AVLKeyCodec as a magic number, the number of
+ * removed keys, the number of added keys, then the removed keys and the
+ * added keys, each in ascending order.
+ *
+ * @param <T>
+ *            the type of data in the trees
+ * @author jredston3
+ * @version 1.0
+ */
+public final class AVLDelta<T extends Comparable<? super T>> {
+
+    private static final int MAGIC = 0x41564C44;
+    // magic and the two counts
+    private static final int HEADER = Integer.BYTES * 3;
+
+    private final List<T> added;
+    private final List<T> removed;
+
+    /**
+     * @param added
+     *            data in the second tree but not the first, ascending
+     * @param removed
+     *            data in the first tree but not the second, ascending
+     */
+    private AVLDelta(List<T> added, List<T> removed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Works out what changed going from one tree to another, skipping
+     * subtrees whose size, root and digest match. Neither tree may change
+     * while this runs.
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param from
+     *            the older tree
+     * @param to
+     *            the newer tree
+     * @return AVLDelta the data added to and removed from from to get to
+     * @throws IllegalArgumentException
+     *             if from or to is null, or they are not ordered the same
+     *             way
+     */
+    public static <T extends Comparable<? super T>> AVLDelta<T> diff(
+            AVL<T> from, AVL<T> to) {
+        return diff(from, to, false);
+    }
+
+    /**
+     * Works out what changed going from one tree to another. Neither tree
+     * may change while this runs.
+     *
+     * @param <T>
+     *            the type of data in the trees
+     * @param from
+     *            the older tree
+     * @param to
+     *            the newer tree
+     * @param verify
+     *            true to compare every key instead of trusting digests,
+     *            which cannot miss a change but walks both trees in full
+     * @return AVLDelta the data added to and removed from from to get to
+     * @throws IllegalArgumentException
+     *             if from or to is null, or they are not ordered the same
+     *             way
+     */
+    public static <T extends Comparable<? super T>> AVLDelta<T> diff(
+            AVL<T> from, AVL<T> to, boolean verify) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Tree given is null");
+        }
+        AVL.checkSameOrder(from, to);
+        List<T> added = new ArrayList<>();
+        List<T> removed = new ArrayList<>();
+        Frontier<T> a = new Frontier<>(from.getRoot(), from.height());
+        Frontier<T> b = new Frontier<>(to.getRoot(), to.height());
+        while (!a.isEmpty() && !b.isEmpty()) {
+            AVLNode<T> x = a.peek();
+            AVLNode<T> y = b.peek();
+            boolean xWhole = a.peekWhole();
+            boolean yWhole = b.peekWhole();
+            if (!verify && xWhole && yWhole && x.getSize() == y.getSize()
+                    && x.getDigest() == y.getDigest() && (x == y
+                    || from.compare(x.getData(), y.getData()) == 0)) {
+                // the same data comes next in both trees
+                a.pop();
+                b.pop();
+            } else if (xWhole && (!yWhole
+                    || x.getHeight() >= y.getHeight())) {
+                // opening the taller subtree first keeps subtrees of the
+                // same height lined up against each other
+                a.open();
+            } else if (yWhole) {
+                b.open();
+            } else {
+                int i = from.compare(x.getData(), y.getData());
+                if (i <= 0) {
+                    a.pop();
+                }
+                if (i >= 0) {
+                    b.pop();
+                }
+                if (i < 0) {
+                    removed.add(x.getData());
+                } else if (i > 0) {
+                    added.add(y.getData());
+                }
+            }
+        }
+        a.drainTo(removed);
+        b.drainTo(added);
+        return new AVLDelta<T>(added, removed);
+    }
+
+    /**
+     * Gets the data the newer tree has that the older one did not.
+     *
+     * @return List of the added data in ascending order
+     */
+    public List<T> getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the data the older tree had that the newer one does not.
+     *
+     * @return List of the removed data in ascending order
+     */
+    public List<T> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Checks whether the two trees held the same data.
+     *
+     * @return boolean whether nothing was added or removed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Removes the removed data from a tree and adds the added data, using
+     * the tree's batched removeAll and addAll. Data already removed or
+     * already added is skipped, so applying a delta twice does no harm.
+     *
+     * @param tree
+     *            the tree to change
+     * @throws IllegalArgumentException
+     *             if tree is null
+     */
+    public void applyTo(AVL<T> tree) {
+        if (tree == null) {
+            throw new IllegalArgumentException("Tree given is null");
+        }
+        if (!removed.isEmpty()) {
+            tree.removeAll(removed);
+        }
+        if (!added.isEmpty()) {
+            tree.addAll(added);
+        }
+    }
+
+    /**
+     * Writes the delta to bytes.
+     *
+     * @param codec
+     *            writes the keys
+     * @return byte[] the encoded delta
+     * @throws IllegalArgumentException
+     *             if codec is null
+     */
+    public byte[] encode(AVLKeyCodec<? super T> codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("Codec given is null");
+        }
+        int length = HEADER;
+        for (T data : removed) {
+            length += codec.encodedLength(data);
+        }
+        for (T data : added) {
+            length += codec.encodedLength(data);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(removed.size());
+        buffer.putInt(added.size());
+        for (T data : removed) {
+            codec.encode(data, buffer);
+        }
+        for (T data : added) {
+            codec.encode(data, buffer);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a delta written by encode.
+     *
+     * @param <T>
+     *            the type of data in the delta
+     * @param bytes
+     *            the encoded delta
+     * @param codec
+     *            reads the keys, must match the codec the delta was written
+     *            with
+     * @return AVLDelta the delta
+     * @throws IllegalArgumentException
+     *             if bytes or codec is null
+     * @throws IOException
+     *             if bytes is not a valid delta
+     */
+    public static <T extends Comparable<? super T>> AVLDelta<T> decode(
+            byte[] bytes, AVLKeyCodec<T> codec) throws IOException {
+        if (bytes == null || codec == null) {
+            throw new IllegalArgumentException("Argument given is null");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        List<T> removed;
+        List<T> added;
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Bytes are not an AVL delta");
+            }
+            int removedCount = buffer.getInt();
+            int addedCount = buffer.getInt();
+            if (removedCount < 0 || addedCount < 0) {
+                throw new IOException("Delta is corrupt");
+            }
+            removed = decode(buffer, codec, removedCount);
+            added = decode(buffer, codec, addedCount);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Delta is truncated", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Delta is corrupt", e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Delta is corrupt");
+        }
+        return new AVLDelta<T>(added, removed);
+    }
+
+    /**
+     * @param <T>
+     *            the type of data in the delta
+     * @param buffer
+     *            bytes to read from
+     * @param codec
+     *            reads the keys
+     * @param count
+     *            number of keys to read
+     * @return List of the keys read
+     * @throws IOException
+     *             if a key is null
+     */
+    private static <T> List<T> decode(ByteBuffer buffer, AVLKeyCodec<T> codec,
+            int count) throws IOException {
+        // a corrupt count must not allocate more than the bytes could hold
+        List<T> keys = new ArrayList<>(Math.min(count, buffer.remaining()));
+        for (int i = 0; i < count; i++) {
+            T key = codec.decode(buffer);
+            if (key == null) {
+                throw new IOException("Delta holds a null key");
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Override
+    public String toString() {
+        return "added " + added + ", removed " + removed;
+    }
+
+    /**
+     * What is left of an inorder walk, as a stack whose top comes first.
+     * Each entry is either a whole subtree still to be walked or a single
+     * node whose left subtree is already done.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     */
+    private static final class Frontier<T extends Comparable<? super T>> {
+        private AVLNode<T>[] nodes;
+        private boolean[] whole;
+        private int top;
+
+        /**
+         * @param root
+         *            root of the tree to walk, may be null
+         * @param height
+         *            height of the tree
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Frontier(AVLNode<T> root, int height) {
+            // opening down one side leaves a node and a right subtree per
+            // level, so this is only outgrown by uneven opening
+            int capacity = 2 * (height + 2);
+            nodes = (AVLNode<T>[]) new AVLNode[capacity];
+            whole = new boolean[capacity];
+            push(root, true);
+        }
+
+        /**
+         * @param node
+         *            node to push, skipped if null
+         * @param isWhole
+         *            whether its whole subtree is pending
+         */
+        private void push(AVLNode<T> node, boolean isWhole) {
+            if (node == null) {
+                return;
+            }
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                whole = Arrays.copyOf(whole, top * 2);
+            }
+            nodes[top] = node;
+            whole[top++] = isWhole;
+        }
+
+        /**
+         * @return boolean whether the walk is done
+         */
+        boolean isEmpty() {
+            return top == 0;
+        }
+
+        /**
+         * @return AVLNode the next entry
+         */
+        AVLNode<T> peek() {
+            return nodes[top - 1];
+        }
+
+        /**
+         * @return boolean whether the next entry is a whole subtree
+         */
+        boolean peekWhole() {
+            return whole[top - 1];
+        }
+
+        /**
+         * Drops the next entry
+         */
+        void pop() {
+            nodes[--top] = null;
+        }
+
+        /**
+         * Replaces the whole subtree on top with its left subtree, its root
+         * and its right subtree
+         */
+        void open() {
+            AVLNode<T> node = nodes[--top];
+            push(node.getRight(), true);
+            push(node, false);
+            push(node.getLeft(), true);
+        }
+
+        /**
+         * Walks the rest in order
+         *
+         * @param data
+         *            list the remaining data is added to
+         */
+        void drainTo(List<T> data) {
+            while (!isEmpty()) {
+                if (peekWhole()) {
+                    open();
+                } else {
+                    data.add(peek().getData());
+                    pop();
+                }
+            }
+        }
+    }
+}
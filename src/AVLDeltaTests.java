@@ -0,0 +1,174 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests AVLDelta against the differences of java.util.TreeSets.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLDeltaTests {
+    private static final int TIMEOUT = 200;
+    private AVL<Integer> from;
+    private TreeSet<Integer> expected;
+    private Random random;
+
+    @Before
+    public void setup() {
+        from = new AVL<>();
+        expected = new TreeSet<>();
+        random = new Random(1332);
+        for (int i = 0; i < 3000; i++) {
+            int key = random.nextInt(10000);
+            from.add(key);
+            expected.add(key);
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testDiffReplica() {
+        // a replica that went through the same changes, then drifted
+        AVL<Integer> to = AVL.union(from, new AVL<>());
+        TreeSet<Integer> expectedTo = new TreeSet<>(expected);
+        for (int i = 0; i < 20; i++) {
+            int key = random.nextInt(10000);
+            if (expectedTo.remove(key)) {
+                to.remove(key);
+            } else {
+                expectedTo.add(key);
+                to.add(key);
+            }
+        }
+        checkDiff(from, to, expected, expectedTo);
+        assertTrue(AVLDelta.diff(from, AVL.union(from, new AVL<>()))
+                .isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testDiffDifferentShapes() {
+        TreeSet<Integer> expectedTo = new TreeSet<>(expected);
+        expectedTo.remove(expected.first());
+        expectedTo.add(-5);
+        expectedTo.add(20000);
+        checkDiff(from, AVL.fromSorted(expectedTo), expected, expectedTo);
+        checkDiff(new AVL<>(), from, new TreeSet<>(), expected);
+        checkDiff(from, new AVL<>(), expected, new TreeSet<>());
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testSkipsSharedSubtrees() {
+        int[] comparisons = new int[1];
+        Comparator<Integer> counting = (a, b) -> {
+            comparisons[0]++;
+            return a.compareTo(b);
+        };
+        AVL<Integer> a = AVL.orderedBy(counting);
+        AVL<Integer> b = AVL.orderedBy(counting);
+        for (int i = 0; i < 20000; i++) {
+            a.add(i * 2);
+            b.add(i * 2);
+        }
+        b.add(1001);
+        b.remove(30000);
+
+        comparisons[0] = 0;
+        AVLDelta<Integer> delta = AVLDelta.diff(a, b);
+        assertEquals(Arrays.asList(1001), delta.getAdded());
+        assertEquals(Arrays.asList(30000), delta.getRemoved());
+        assertTrue(comparisons[0] < 200);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testDiffVerify() {
+        // "Aa" and "BB" share a hash code, so the two trees share digests
+        AVL<String> a = new AVL<>(Arrays.asList("Aa", "m", "z"));
+        AVL<String> b = new AVL<>(Arrays.asList("BB", "m", "z"));
+        assertEquals(a.getRoot().getDigest(), b.getRoot().getDigest());
+        AVLDelta<String> delta = AVLDelta.diff(a, b, true);
+        assertEquals(Arrays.asList("BB"), delta.getAdded());
+        assertEquals(Arrays.asList("Aa"), delta.getRemoved());
+
+        AVL<Integer> to = AVL.union(from, new AVL<>());
+        to.add(-1);
+        assertEquals(AVLDelta.diff(from, to).getAdded(),
+                AVLDelta.diff(from, to, true).getAdded());
+        assertTrue(AVLDelta.diff(from, from, true).isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testEncode() throws IOException {
+        AVL<String> a = new AVL<>(Arrays.asList("a", "b", "c"));
+        AVL<String> b = new AVL<>(Arrays.asList("b", "c", "d", "e"));
+        AVLDelta<String> delta = AVLDelta.decode(AVLDelta.diff(a, b).encode(
+                AVLKeyCodec.STRING), AVLKeyCodec.STRING);
+        assertEquals(Arrays.asList("d", "e"), delta.getAdded());
+        assertEquals(Arrays.asList("a"), delta.getRemoved());
+
+        delta.applyTo(a);
+        assertEquals(b.inorder(), a.inorder());
+        delta.applyTo(a);
+        assertEquals(b.inorder(), a.inorder());
+    }
+
+    @Test(timeout = TIMEOUT, expected = IOException.class)
+    public void testDecodeTruncated() throws IOException {
+        byte[] bytes = AVLDelta.diff(new AVL<>(), from).encode(
+                AVLKeyCodec.INTEGER);
+        AVLDelta.decode(Arrays.copyOf(bytes, bytes.length - 1),
+                AVLKeyCodec.INTEGER);
+    }
+
+    @Test(timeout = TIMEOUT, expected = IOException.class)
+    public void testDecodeCorruptLength() throws IOException {
+        byte[] bytes = AVLDelta.diff(new AVL<>(), new AVL<>(Arrays.asList(
+                "a", "b"))).encode(AVLKeyCodec.STRING);
+        // the first added key's length follows the three header ints
+        ByteBuffer.wrap(bytes).putInt(12, -1);
+        AVLDelta.decode(bytes, AVLKeyCodec.STRING);
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testDiffDifferentOrders() {
+        AVLDelta.diff(from, AVL.orderedBy(Comparator.reverseOrder()));
+    }
+
+    /**
+     * Checks the diff of two trees and that applying it to a copy of the
+     * first gives the second
+     *
+     * @param a
+     *            the older tree
+     * @param b
+     *            the newer tree
+     * @param expectedA
+     *            data in a
+     * @param expectedB
+     *            data in b
+     */
+    private void checkDiff(AVL<Integer> a, AVL<Integer> b,
+            TreeSet<Integer> expectedA, TreeSet<Integer> expectedB) {
+        TreeSet<Integer> added = new TreeSet<>(expectedB);
+        added.removeAll(expectedA);
+        TreeSet<Integer> removed = new TreeSet<>(expectedA);
+        removed.removeAll(expectedB);
+
+        AVLDelta<Integer> delta = AVLDelta.diff(a, b);
+        assertEquals(new ArrayList<>(added), delta.getAdded());
+        assertEquals(new ArrayList<>(removed), delta.getRemoved());
+
+        AVL<Integer> replica = AVL.union(a, new AVL<>());
+        delta.applyTo(replica);
+        assertEquals(new ArrayList<>(expectedB), replica.inorder());
+    }
+}
@@ -0,0 +1,136 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns keys into bytes and back for AVL snapshots. Codecs for Integer, Long
+ * and String are provided, and other types can implement this interface.
+ *
+ * @param <T>
+ *            the type of key
+ * @author jredston3
+ * @version 1.0
+ */
+public interface AVLKeyCodec<T> {
+
+    /**
+     * Writes an Integer as 4 bytes.
+     */
+    AVLKeyCodec<Integer> INTEGER = new AVLKeyCodec<Integer>() {
+        @Override
+        public int encodedLength(Integer key) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer key, ByteBuffer out) {
+            out.putInt(key);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer in) {
+            return in.getInt();
+        }
+    };
+
+    /**
+     * Writes a Long as 8 bytes.
+     */
+    AVLKeyCodec<Long> LONG = new AVLKeyCodec<Long>() {
+        @Override
+        public int encodedLength(Long key) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long key, ByteBuffer out) {
+            out.putLong(key);
+        }
+
+        @Override
+        public Long decode(ByteBuffer in) {
+            return in.getLong();
+        }
+    };
+
+    /**
+     * Writes a String as a 4 byte length followed by its UTF-8 bytes.
+     */
+    AVLKeyCodec<String> STRING = new AVLKeyCodec<String>() {
+        @Override
+        public int encodedLength(String key) {
+            // counted rather than encoded, so a key is only encoded once
+            int length = Integer.BYTES;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c)
+                        && i + 1 < key.length()
+                        && Character.isLowSurrogate(key.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    // an unpaired surrogate is written as '?'
+                    length += 1;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public void encode(String key, ByteBuffer out) {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+
+        @Override
+        public String decode(ByteBuffer in) {
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IllegalArgumentException("String length " + length
+                        + " is corrupt");
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Gets how many bytes encode will write for a key.
+     *
+     * @param key
+     *            the key
+     * @return int number of bytes
+     */
+    int encodedLength(T key);
+
+    /**
+     * Writes a key at the position of out, which has at least
+     * encodedLength(key) bytes remaining.
+     *
+     * @param key
+     *            the key
+     * @param out
+     *            buffer to write into
+     */
+    void encode(T key, ByteBuffer out);
+
+    /**
+     * Reads a key written by encode from the position of in.
+     *
+     * @param in
+     *            buffer to read from
+     * @return T the key
+     * @throws java.nio.BufferUnderflowException
+     *             if in ends before the key does
+     * @throws IllegalArgumentException
+     *             if the bytes cannot be a key, such as a negative length
+     */
+    T decode(ByteBuffer in);
+}
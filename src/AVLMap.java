@@ -0,0 +1,1294 @@
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A NavigableMap kept in an AVL tree whose nodes hold the key and value
+ * directly, so there is no holder object per mapping and each comparison is
+ * a straight compareTo on the keys.
+ *
+ * put, get, remove, computeIfAbsent and merge each walk down the tree once.
+ * The balancing rules are the same as AVL's, so the same keys added in the
+ * same order give the same shape. Nodes also keep their subtree size, so
+ * size() of a range view is O(log n).
+ *
+ * The views returned by subMap, headMap, tailMap, descendingMap, keySet,
+ * values and entrySet are backed by the same tree and never copy data.
+ * Entries handed out by entrySet iterators are live and setValue writes
+ * through; entries returned by the navigation methods are snapshots. As the
+ * java.util contracts require, null keys are rejected with a
+ * NullPointerException. Null values are allowed.
+ *
+ * @param <K>
+ *            the type of keys
+ * @param <V>
+ *            the type of values
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLMap<K extends Comparable<? super K>, V> extends
+        AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    // returned by a Change to leave the key out of the map
+    private static final Object REMOVE = new Object();
+
+    private final Tree<K, V> tree;
+    // bounds of this view in ascending order, null when unbounded
+    private final K lo;
+    private final boolean loInclusive;
+    private final K hi;
+    private final boolean hiInclusive;
+    private final boolean descending;
+
+    /**
+     * Creates an empty map.
+     */
+    public AVLMap() {
+        this(new Tree<K, V>(), null, false, null, false, false);
+    }
+
+    /**
+     * Creates a map holding the mappings in m.
+     *
+     * @param m
+     *            mappings to put in the map
+     * @throws NullPointerException
+     *             if m or any key in it is null
+     */
+    public AVLMap(Map<? extends K, ? extends V> m) {
+        this();
+        putAll(m);
+    }
+
+    /**
+     * Creates a view of a range of the tree.
+     *
+     * @param tree
+     *            the tree backing this map
+     * @param lo
+     *            lower bound, null if there is none
+     * @param loInclusive
+     *            whether the lower bound is in the view
+     * @param hi
+     *            upper bound, null if there is none
+     * @param hiInclusive
+     *            whether the upper bound is in the view
+     * @param descending
+     *            whether the view runs from largest to smallest
+     */
+    private AVLMap(Tree<K, V> tree, K lo, boolean loInclusive, K hi,
+            boolean hiInclusive, boolean descending) {
+        this.tree = tree;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Node of the tree, also handed out as a live entry.
+     *
+     * @param <K>
+     *            the type of keys
+     * @param <V>
+     *            the type of values
+     */
+    private static final class Entry<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private V value;
+        private Entry<K, V> left;
+        private Entry<K, V> right;
+        private int height;
+        private int size;
+
+        /**
+         * @param key
+         *            key of the mapping
+         * @param value
+         *            value of the mapping
+         */
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+            this.size = 1;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return key.equals(other.getKey())
+                    && Objects.equals(value, other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Decides what happens to a key found, or not found, by a descent.
+     *
+     * @param <K>
+     *            the type of keys
+     * @param <V>
+     *            the type of values
+     */
+    private interface Change<K, V> {
+        /**
+         * @param key
+         *            key being changed
+         * @param entry
+         *            entry holding key, or null if key is not in the map
+         * @return Object value to store, or REMOVE to leave key out
+         */
+        Object apply(K key, Entry<K, V> entry);
+    }
+
+    /**
+     * The tree itself, shared by a map and all of its views.
+     *
+     * @param <K>
+     *            the type of keys
+     * @param <V>
+     *            the type of values
+     */
+    private static final class Tree<K extends Comparable<? super K>, V> {
+        private Entry<K, V> root;
+        // number of structural changes, used by iterators to fail fast
+        private int modCount;
+        // what the last change did: the value before it, and the entry
+        // holding the key after it, null if the key is not in the map
+        private V previous;
+        private Entry<K, V> touched;
+
+        /**
+         * @return int number of mappings
+         */
+        int size() {
+            return sizeOf(root);
+        }
+
+        /**
+         * Empties the tree
+         */
+        void clear() {
+            root = null;
+            modCount++;
+        }
+
+        /**
+         * Walks down from the root looking for key, one comparison per level
+         *
+         * @param key
+         *            key being found
+         * @return Entry holding key, or null if it is not in the tree
+         */
+        Entry<K, V> find(K key) {
+            Entry<K, V> node = root;
+            while (node != null) {
+                int i = key.compareTo(node.key);
+                if (i == 0) {
+                    return node;
+                }
+                node = i < 0 ? node.left : node.right;
+            }
+            return null;
+        }
+
+        /**
+         * Finds the entry closest to key on one side of it
+         *
+         * @param key
+         *            key being searched around
+         * @param below
+         *            whether to look below key instead of above it
+         * @param inclusive
+         *            whether an entry equal to key counts
+         * @return Entry the closest entry, or null if there is none
+         */
+        Entry<K, V> nearest(K key, boolean below, boolean inclusive) {
+            Entry<K, V> best = null;
+            Entry<K, V> node = root;
+            while (node != null) {
+                int i = key.compareTo(node.key);
+                if (i == 0 && inclusive) {
+                    return node;
+                }
+                if (below ? i > 0 : i < 0) {
+                    best = node;
+                    node = below ? node.right : node.left;
+                } else {
+                    node = below ? node.left : node.right;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @param largest
+         *            whether to get the largest entry instead of the smallest
+         * @return Entry smallest or largest entry, null if the tree is empty
+         */
+        Entry<K, V> end(boolean largest) {
+            Entry<K, V> node = root;
+            if (node == null) {
+                return null;
+            }
+            Entry<K, V> next = largest ? node.right : node.left;
+            while (next != null) {
+                node = next;
+                next = largest ? node.right : node.left;
+            }
+            return node;
+        }
+
+        /**
+         * Counts the keys below key using subtree sizes, in O(log n)
+         *
+         * @param key
+         *            key being counted up to
+         * @param inclusive
+         *            whether a key equal to key is counted
+         * @return int the count
+         */
+        int countBelow(K key, boolean inclusive) {
+            int count = 0;
+            Entry<K, V> node = root;
+            while (node != null) {
+                int i = key.compareTo(node.key);
+                if (i > 0 || (i == 0 && inclusive)) {
+                    count += sizeOf(node.left) + 1;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Walks down to key once and lets change decide its fate, adding,
+         * updating or removing it and rebalancing on the way back up. Sets
+         * previous and touched.
+         *
+         * @param key
+         *            key being changed
+         * @param change
+         *            what to do with it
+         */
+        void change(K key, Change<K, V> change) {
+            previous = null;
+            touched = null;
+            root = change(root, key, change);
+        }
+
+        /**
+         * @param node
+         *            node we're currently at
+         * @param key
+         *            key being changed
+         * @param change
+         *            what to do with it
+         * @return Entry new root of this subtree
+         */
+        @SuppressWarnings("unchecked")
+        private Entry<K, V> change(Entry<K, V> node, K key,
+                Change<K, V> change) {
+            if (node == null) {
+                Object value = apply(change, key, null);
+                if (value == REMOVE) {
+                    return null;
+                }
+                modCount++;
+                touched = new Entry<K, V>(key, (V) value);
+                return touched;
+            }
+            int i = key.compareTo(node.key);
+            if (i < 0) {
+                node.left = change(node.left, key, change);
+            } else if (i > 0) {
+                node.right = change(node.right, key, change);
+            } else {
+                previous = node.value;
+                Object value = apply(change, key, node);
+                if (value != REMOVE) {
+                    node.value = (V) value;
+                    touched = node;
+                    // nothing below this node changed
+                    return node;
+                }
+                modCount++;
+                if (node.left == null) {
+                    return node.right;
+                } else if (node.right == null) {
+                    return node.left;
+                }
+                // has two children, the successor node takes this place so
+                // entries already handed out keep their key
+                Entry<K, V> successor = node.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                successor.right = removeMin(node.right);
+                successor.left = node.left;
+                node = successor;
+            }
+            return balance(node);
+        }
+
+        /**
+         * Runs a change, failing fast if it changed the map itself
+         *
+         * @param change
+         *            the change
+         * @param key
+         *            key being changed
+         * @param entry
+         *            entry holding key, or null
+         * @return Object what change returned
+         */
+        private Object apply(Change<K, V> change, K key, Entry<K, V> entry) {
+            int expectedModCount = modCount;
+            Object value = change.apply(key, entry);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return value;
+        }
+
+        /**
+         * Removes the smallest node below node
+         *
+         * @param node
+         *            node we're currently at
+         * @return Entry new root of this subtree
+         */
+        private Entry<K, V> removeMin(Entry<K, V> node) {
+            if (node.left == null) {
+                return node.right;
+            }
+            node.left = removeMin(node.left);
+            return balance(node);
+        }
+
+        /**
+         * @param node
+         *            node whose height is wanted, may be null
+         * @return int height of the node, -1 if node is null
+         */
+        private static int height(Entry<?, ?> node) {
+            return node == null ? -1 : node.height;
+        }
+
+        /**
+         * @param node
+         *            root of a subtree, may be null
+         * @return int size of the subtree, 0 if node is null
+         */
+        private static int sizeOf(Entry<?, ?> node) {
+            return node == null ? 0 : node.size;
+        }
+
+        /**
+         * @param node
+         *            node whose height and size are recalculated from its
+         *            children
+         */
+        private static void update(Entry<?, ?> node) {
+            node.height = Math.max(height(node.left), height(node.right)) + 1;
+            node.size = sizeOf(node.left) + sizeOf(node.right) + 1;
+        }
+
+        /**
+         * @param node
+         *            node whose balance factor is wanted
+         * @return int height of its left subtree minus its right subtree
+         */
+        private static int balanceFactor(Entry<?, ?> node) {
+            return height(node.left) - height(node.right);
+        }
+
+        /**
+         * Updates a node and rotates it if it has become unbalanced.
+         *
+         * @param node
+         *            node being balanced
+         * @return Entry new root of this subtree
+         */
+        private static <K, V> Entry<K, V> balance(Entry<K, V> node) {
+            update(node);
+            int balanceFactor = balanceFactor(node);
+            if (balanceFactor > 1) {
+                if (balanceFactor(node.left) < 0) {
+                    node.left = rotateWithRightChild(node.left);
+                }
+                node = rotateWithLeftChild(node);
+            } else if (balanceFactor < -1) {
+                if (balanceFactor(node.right) > 0) {
+                    node.right = rotateWithLeftChild(node.right);
+                }
+                node = rotateWithRightChild(node);
+            }
+            return node;
+        }
+
+        /**
+         * @param node2
+         *            node being rotated around
+         * @return Entry new root of this subtree
+         */
+        private static <K, V> Entry<K, V> rotateWithLeftChild(
+                Entry<K, V> node2) {
+            Entry<K, V> node1 = node2.left;
+            node2.left = node1.right;
+            node1.right = node2;
+            update(node2);
+            update(node1);
+            return node1;
+        }
+
+        /**
+         * @param node1
+         *            node being rotated around
+         * @return Entry new root of this subtree
+         */
+        private static <K, V> Entry<K, V> rotateWithRightChild(
+                Entry<K, V> node1) {
+            Entry<K, V> node2 = node1.right;
+            node1.right = node2.left;
+            node2.left = node1;
+            update(node1);
+            update(node2);
+            return node2;
+        }
+
+        /**
+         * Inorder iterator over a range of the tree, the stack holds the
+         * path to the next entry.
+         */
+        final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+            private final Entry<K, V>[] stack;
+            private int top;
+            private int expectedModCount;
+            private final K to;
+            private final boolean toInclusive;
+            private final boolean descending;
+            private Entry<K, V> lastReturned;
+
+            /**
+             * Creates an iterator starting at the first entry past from
+             *
+             * @param from
+             *            where to start, null to start at the end of the tree
+             * @param fromInclusive
+             *            whether an entry equal to from is returned
+             * @param to
+             *            where to stop, null to run to the end of the tree
+             * @param toInclusive
+             *            whether an entry equal to to is returned
+             * @param descending
+             *            whether to walk from largest to smallest
+             */
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            EntryIterator(K from, boolean fromInclusive, K to,
+                    boolean toInclusive, boolean descending) {
+                stack = (Entry<K, V>[]) new Entry[height(root) + 1];
+                expectedModCount = modCount;
+                this.to = to;
+                this.toInclusive = toInclusive;
+                this.descending = descending;
+                seek(from, fromInclusive);
+            }
+
+            /**
+             * Rebuilds the stack so the next entry is the first one past from
+             *
+             * @param from
+             *            where to start, null to start at the end of the tree
+             * @param inclusive
+             *            whether an entry equal to from is returned
+             */
+            private void seek(K from, boolean inclusive) {
+                top = 0;
+                Entry<K, V> node = root;
+                while (node != null) {
+                    int i = from == null ? 0 : from.compareTo(node.key);
+                    if (from == null || (descending ? i > 0 : i < 0)
+                            || (i == 0 && inclusive)) {
+                        stack[top++] = node;
+                        node = descending ? node.right : node.left;
+                    } else {
+                        node = descending ? node.left : node.right;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (top == 0) {
+                    return false;
+                }
+                if (to == null) {
+                    return true;
+                }
+                int i = stack[top - 1].key.compareTo(to);
+                return descending ? i > 0 || (i == 0 && toInclusive)
+                        : i < 0 || (i == 0 && toInclusive);
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException(
+                            "No more data in the AVLMap");
+                }
+                Entry<K, V> node = stack[--top];
+                Entry<K, V> next = descending ? node.left : node.right;
+                while (next != null) {
+                    stack[top++] = next;
+                    next = descending ? next.right : next.left;
+                }
+                lastReturned = node;
+                return node;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException(
+                            "next has not been called");
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                change(lastReturned.key, (k, e) -> REMOVE);
+                // removing never makes the tree taller, so the stack fits
+                seek(lastReturned.key, false);
+                expectedModCount = modCount;
+                lastReturned = null;
+            }
+        }
+    }
+
+    /**
+     * @param key
+     *            key being checked
+     * @return boolean whether key is below the range of this view
+     */
+    private boolean tooLow(K key) {
+        if (lo == null) {
+            return false;
+        }
+        int i = key.compareTo(lo);
+        return i < 0 || (i == 0 && !loInclusive);
+    }
+
+    /**
+     * @param key
+     *            key being checked
+     * @return boolean whether key is above the range of this view
+     */
+    private boolean tooHigh(K key) {
+        if (hi == null) {
+            return false;
+        }
+        int i = key.compareTo(hi);
+        return i > 0 || (i == 0 && !hiInclusive);
+    }
+
+    /**
+     * @param key
+     *            key being checked
+     * @return boolean whether key is in the range of this view
+     */
+    private boolean inRange(K key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    /**
+     * @return Entry entry with the smallest key in range, or null
+     */
+    private Entry<K, V> lowest() {
+        Entry<K, V> entry = lo == null ? tree.end(false) : tree.nearest(lo,
+                false, loInclusive);
+        return entry == null || tooHigh(entry.key) ? null : entry;
+    }
+
+    /**
+     * @return Entry entry with the largest key in range, or null
+     */
+    private Entry<K, V> highest() {
+        Entry<K, V> entry = hi == null ? tree.end(true) : tree.nearest(hi,
+                true, hiInclusive);
+        return entry == null || tooLow(entry.key) ? null : entry;
+    }
+
+    /**
+     * @param key
+     *            key being searched for
+     * @param inclusive
+     *            whether key itself counts
+     * @return Entry entry with the smallest key in range at or above key, or
+     *         null
+     */
+    private Entry<K, V> above(K key, boolean inclusive) {
+        if (tooLow(key)) {
+            return lowest();
+        }
+        Entry<K, V> entry = tree.nearest(key, false, inclusive);
+        return entry == null || tooHigh(entry.key) ? null : entry;
+    }
+
+    /**
+     * @param key
+     *            key being searched for
+     * @param inclusive
+     *            whether key itself counts
+     * @return Entry entry with the largest key in range at or below key, or
+     *         null
+     */
+    private Entry<K, V> below(K key, boolean inclusive) {
+        if (tooHigh(key)) {
+            return highest();
+        }
+        Entry<K, V> entry = tree.nearest(key, true, inclusive);
+        return entry == null || tooLow(entry.key) ? null : entry;
+    }
+
+    /**
+     * @param key
+     *            key passed in by the caller
+     * @return K key, once checked not to be null
+     */
+    private K checkNull(K key) {
+        if (key == null) {
+            throw new NullPointerException("AVLMap does not allow null keys");
+        }
+        return key;
+    }
+
+    /**
+     * @param key
+     *            key passed in by the caller for a write
+     * @return K key, once checked not to be null and to be in range
+     */
+    private K checkWritable(K key) {
+        if (!inRange(checkNull(key))) {
+            throw new IllegalArgumentException("Key is outside this view");
+        }
+        return key;
+    }
+
+    /**
+     * @param entry
+     *            a live entry, may be null
+     * @return Map.Entry a snapshot of entry, null if entry is null
+     */
+    private static <K, V> Map.Entry<K, V> snapshot(Entry<K, V> entry) {
+        return entry == null ? null
+                : new AbstractMap.SimpleImmutableEntry<K, V>(entry);
+    }
+
+    /**
+     * @param entry
+     *            an entry, may be null
+     * @return K its key, null if entry is null
+     */
+    private static <K> K keyOf(Entry<K, ?> entry) {
+        return entry == null ? null : entry.key;
+    }
+
+    /**
+     * @param entry
+     *            an entry, may be null
+     * @return K its key
+     * @throws NoSuchElementException
+     *             if entry is null
+     */
+    private static <K> K keyOrThrow(Entry<K, ?> entry) {
+        if (entry == null) {
+            throw new NoSuchElementException("Map is empty");
+        }
+        return entry.key;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        K k = checkNull((K) key);
+        Entry<K, V> entry = inRange(k) ? tree.find(k) : null;
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        K k = checkNull((K) key);
+        return inRange(k) && tree.find(k) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        tree.change(checkWritable(key), (k, entry) -> value);
+        return tree.previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        K k = checkNull((K) key);
+        if (!inRange(k)) {
+            return null;
+        }
+        tree.change(k, (k2, e) -> REMOVE);
+        return tree.previous;
+    }
+
+    @Override
+    public V computeIfAbsent(K key,
+            Function<? super K, ? extends V> mappingFunction) {
+        checkWritable(key);
+        if (mappingFunction == null) {
+            throw new NullPointerException("mappingFunction is null");
+        }
+        tree.change(key, (k, entry) -> {
+            if (entry != null && entry.value != null) {
+                return entry.value;
+            }
+            V value = mappingFunction.apply(k);
+            if (value != null) {
+                return value;
+            }
+            // keep an existing null mapping, add nothing if there was none
+            return entry == null ? REMOVE : null;
+        });
+        return tree.touched == null ? null : tree.touched.value;
+    }
+
+    @Override
+    public V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        checkWritable(key);
+        if (value == null || remappingFunction == null) {
+            throw new NullPointerException(
+                    "value or remappingFunction is null");
+        }
+        tree.change(key, (k, entry) -> {
+            if (entry == null || entry.value == null) {
+                return value;
+            }
+            V merged = remappingFunction.apply(entry.value, value);
+            return merged == null ? REMOVE : merged;
+        });
+        return tree.touched == null ? null : tree.touched.value;
+    }
+
+    @Override
+    public int size() {
+        if (lo == null && hi == null) {
+            return tree.size();
+        }
+        int below = lo == null ? 0 : tree.countBelow(lo, !loInclusive);
+        int upTo = hi == null ? tree.size() : tree.countBelow(hi,
+                hiInclusive);
+        return Math.max(0, upTo - below);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return lowest() == null;
+    }
+
+    @Override
+    public void clear() {
+        if (lo == null && hi == null) {
+            tree.clear();
+            return;
+        }
+        Iterator<Map.Entry<K, V>> entries = entryIterator();
+        while (entries.hasNext()) {
+            entries.next();
+            entries.remove();
+        }
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        checkNull(key);
+        return snapshot(descending ? above(key, false) : below(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        checkNull(key);
+        return keyOf(descending ? above(key, false) : below(key, false));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        checkNull(key);
+        return snapshot(descending ? above(key, true) : below(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        checkNull(key);
+        return keyOf(descending ? above(key, true) : below(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        checkNull(key);
+        return snapshot(descending ? below(key, true) : above(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        checkNull(key);
+        return keyOf(descending ? below(key, true) : above(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        checkNull(key);
+        return snapshot(descending ? below(key, false) : above(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        checkNull(key);
+        return keyOf(descending ? below(key, false) : above(key, false));
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return snapshot(descending ? highest() : lowest());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return snapshot(descending ? lowest() : highest());
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(descending ? highest() : lowest());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(descending ? lowest() : highest());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        Map.Entry<K, V> entry = firstEntry();
+        if (entry != null) {
+            tree.change(entry.getKey(), (k, e) -> REMOVE);
+        }
+        return entry;
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        Map.Entry<K, V> entry = lastEntry();
+        if (entry != null) {
+            tree.change(entry.getKey(), (k, e) -> REMOVE);
+        }
+        return entry;
+    }
+
+    /**
+     * @return Iterator over the entries of this view in its order
+     */
+    private Iterator<Map.Entry<K, V>> entryIterator() {
+        if (descending) {
+            return tree.new EntryIterator(hi, hiInclusive, lo, loInclusive,
+                    true);
+        }
+        return tree.new EntryIterator(lo, loInclusive, hi, hiInclusive,
+                false);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return entryIterator();
+            }
+
+            @Override
+            public int size() {
+                return AVLMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                return containsKey(entry.getKey()) && Objects.equals(get(entry
+                        .getKey()), entry.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!contains(o)) {
+                    return false;
+                }
+                AVLMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                AVLMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Map.Entry<K, V>> entries = entryIterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return AVLMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                AVLMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<K>(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new AVLMap<K, V>(tree, lo, loInclusive, hi, hiInclusive,
+                !descending);
+    }
+
+    /**
+     * Checks that a bound given for a new view lies within this view
+     *
+     * @param bound
+     *            the new bound
+     * @param inclusive
+     *            whether the new bound is inclusive
+     */
+    private void checkBound(K bound, boolean inclusive) {
+        checkNull(bound);
+        if (lo != null) {
+            int i = bound.compareTo(lo);
+            if (i < 0 || (i == 0 && !loInclusive && inclusive)) {
+                throw new IllegalArgumentException("Bound is outside view");
+            }
+        }
+        if (hi != null) {
+            int i = bound.compareTo(hi);
+            if (i > 0 || (i == 0 && !hiInclusive && inclusive)) {
+                throw new IllegalArgumentException("Bound is outside view");
+            }
+        }
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive,
+            K toKey, boolean toInclusive) {
+        checkBound(fromKey, fromInclusive);
+        checkBound(toKey, toInclusive);
+        int i = fromKey.compareTo(toKey);
+        if (descending ? i < 0 : i > 0) {
+            throw new IllegalArgumentException("fromKey is after toKey");
+        }
+        if (descending) {
+            return new AVLMap<K, V>(tree, toKey, toInclusive, fromKey,
+                    fromInclusive, true);
+        }
+        return new AVLMap<K, V>(tree, fromKey, fromInclusive, toKey,
+                toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        checkBound(toKey, inclusive);
+        if (descending) {
+            return new AVLMap<K, V>(tree, toKey, inclusive, hi, hiInclusive,
+                    true);
+        }
+        return new AVLMap<K, V>(tree, lo, loInclusive, toKey, inclusive,
+                false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        checkBound(fromKey, inclusive);
+        if (descending) {
+            return new AVLMap<K, V>(tree, lo, loInclusive, fromKey, inclusive,
+                    true);
+        }
+        return new AVLMap<K, V>(tree, fromKey, inclusive, hi, hiInclusive,
+                false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    /**
+     * The keys of an AVLMap view, backed by the map.
+     *
+     * @param <K>
+     *            the type of keys
+     */
+    private static final class KeySet<K extends Comparable<? super K>>
+            extends AbstractSet<K> implements NavigableSet<K> {
+        private final AVLMap<K, ?> map;
+
+        /**
+         * @param map
+         *            the map whose keys these are
+         */
+        KeySet(AVLMap<K, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            Iterator<? extends Map.Entry<K, ?>> entries = map.entryIterator();
+            return new Iterator<K>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return entries.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!map.containsKey(o)) {
+                return false;
+            }
+            map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public K lower(K e) {
+            return map.lowerKey(e);
+        }
+
+        @Override
+        public K floor(K e) {
+            return map.floorKey(e);
+        }
+
+        @Override
+        public K ceiling(K e) {
+            return map.ceilingKey(e);
+        }
+
+        @Override
+        public K higher(K e) {
+            return map.higherKey(e);
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K pollFirst() {
+            Map.Entry<K, ?> entry = map.pollFirstEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public K pollLast() {
+            Map.Entry<K, ?> entry = map.pollLastEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return map.descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive,
+                K toElement, boolean toInclusive) {
+            return map.subMap(fromElement, fromInclusive, toElement,
+                    toInclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return map.headMap(toElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return map.tailMap(fromElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+    }
+}
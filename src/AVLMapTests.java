@@ -0,0 +1,204 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests AVLMap against java.util.TreeMap.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLMapTests {
+    private static final int TIMEOUT = 200;
+    private AVLMap<Integer, String> map;
+    private TreeMap<Integer, String> expected;
+
+    @Before
+    public void setup() {
+        map = new AVLMap<>();
+        expected = new TreeMap<>();
+        Random random = new Random(1332);
+        for (int i = 0; i < 200; i++) {
+            int key = random.nextInt(500) * 2;
+            assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testMatchesTreeMap() {
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            Integer key = random.nextInt(1000);
+            switch (random.nextInt(4)) {
+            case 0:
+                assertEquals(expected.put(key, "p" + i), map.put(key, "p" + i));
+                break;
+            case 1:
+                assertEquals(expected.remove(key), map.remove(key));
+                break;
+            case 2:
+                assertEquals(expected.computeIfAbsent(key, k -> "c" + k),
+                        map.computeIfAbsent(key, k -> "c" + k));
+                break;
+            default:
+                // merging "" removes the key
+                String value = random.nextInt(3) == 0 ? "" : "m";
+                assertEquals(expected.merge(key, value, (a, b) -> b.isEmpty()
+                        ? null : a + b), map.merge(key, value,
+                        (a, b) -> b.isEmpty() ? null : a + b));
+                break;
+            }
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.values()),
+                new ArrayList<>(map.values()));
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testNavigation() {
+        for (int key = -3; key < 1003; key++) {
+            assertEquals(expected.floorEntry(key), map.floorEntry(key));
+            assertEquals(expected.ceilingKey(key), map.ceilingKey(key));
+            assertEquals(expected.lowerEntry(key), map.lowerEntry(key));
+            assertEquals(expected.higherKey(key), map.higherKey(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        assertEquals(expected.firstEntry(), map.firstEntry());
+        assertEquals(expected.lastKey(), map.lastKey());
+        assertEquals(expected.pollFirstEntry(), map.pollFirstEntry());
+        assertEquals(expected.pollLastEntry(), map.pollLastEntry());
+        assertEquals(expected, map);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testViews() {
+        checkView(expected.subMap(100, true, 600, false),
+                map.subMap(100, true, 600, false));
+        checkView(expected.headMap(301, true), map.headMap(301, true));
+        checkView(expected.tailMap(250, false), map.tailMap(250, false));
+        checkView(expected.descendingMap(), map.descendingMap());
+        checkView(expected.descendingMap().subMap(800, false, 200, true)
+                .headMap(500, true), map.descendingMap().subMap(800, false,
+                200, true).headMap(500, true));
+        assertEquals(new ArrayList<>(expected.descendingKeySet().headSet(
+                500)), new ArrayList<>(map.descendingKeySet().headSet(500)));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testViewsWriteThrough() {
+        NavigableMap<Integer, String> view = map.subMap(100, true, 200, true);
+        view.put(101, "a");
+        assertEquals("a", map.get(101));
+        map.put(103, "b");
+        assertEquals("b", view.get(103));
+
+        for (Map.Entry<Integer, String> entry : view.entrySet()) {
+            entry.setValue("set");
+        }
+        assertEquals("set", map.get(101));
+
+        Iterator<Integer> keys = view.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next() % 2 == 1) {
+                keys.remove();
+            }
+        }
+        assertFalse(map.containsKey(101));
+        view.clear();
+        expected.subMap(100, true, 200, true).clear();
+        assertTrue(view.isEmpty());
+        assertEquals(expected.keySet(), map.keySet());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testEntriesKeepTheirKeys() {
+        // removing a node with two children must not move another key into
+        // an entry that has already been handed out
+        AVLMap<Integer, String> small = new AVLMap<>();
+        for (int i : Arrays.asList(4, 2, 6, 1, 3, 5, 7)) {
+            small.put(i, "v" + i);
+        }
+        Iterator<Map.Entry<Integer, String>> entries = small.entrySet()
+                .iterator();
+        Map.Entry<Integer, String> five = null;
+        while (entries.hasNext()) {
+            Map.Entry<Integer, String> entry = entries.next();
+            if (entry.getKey() == 5) {
+                five = entry;
+            }
+        }
+        small.remove(4);
+        assertEquals((Integer) 5, five.getKey());
+        five.setValue("five");
+        assertEquals("five", small.get(5));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testNullValues() {
+        map.put(-1, null);
+        assertTrue(map.containsKey(-1));
+        assertNull(map.get(-1));
+        assertEquals("x", map.merge(-1, "x", (a, b) -> a + b));
+        assertNull(map.computeIfAbsent(-2, k -> null));
+        assertFalse(map.containsKey(-2));
+    }
+
+    @Test(timeout = TIMEOUT, expected = ConcurrentModificationException.class)
+    public void testComputeIfAbsentChangesMap() {
+        map.computeIfAbsent(-1, k -> map.put(-2, "x"));
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testViewPutOutOfRange() {
+        map.headMap(10).put(10, "x");
+    }
+
+    @Test(timeout = TIMEOUT, expected = NullPointerException.class)
+    public void testNullKey() {
+        map.get(null);
+    }
+
+    /**
+     * Checks a view answers the same as the matching TreeMap view
+     *
+     * @param expectedView
+     *            TreeMap view
+     * @param view
+     *            AVLMap view
+     */
+    private void checkView(NavigableMap<Integer, String> expectedView,
+            NavigableMap<Integer, String> view) {
+        assertEquals(expectedView.size(), view.size());
+        assertEquals(new ArrayList<>(expectedView.entrySet()),
+                new ArrayList<>(view.entrySet()));
+        assertEquals(new ArrayList<>(expectedView.descendingMap().keySet()),
+                new ArrayList<>(view.descendingMap().keySet()));
+        assertEquals(expectedView.firstEntry(), view.firstEntry());
+        assertEquals(expectedView.lastEntry(), view.lastEntry());
+        for (int key : Arrays.asList(-1, 99, 100, 101, 300, 301, 599, 600,
+                1001)) {
+            assertEquals(expectedView.floorKey(key), view.floorKey(key));
+            assertEquals(expectedView.ceilingEntry(key),
+                    view.ceilingEntry(key));
+            assertEquals(expectedView.lowerKey(key), view.lowerKey(key));
+            assertEquals(expectedView.higherEntry(key),
+                    view.higherEntry(key));
+            assertEquals(expectedView.get(key), view.get(key));
+        }
+    }
+}
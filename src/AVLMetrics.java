@@ -0,0 +1,271 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An AVLMetricsListener that keeps running totals. It counts rotations, all
+ * comparisons the tree makes and, per operation, the number of calls,
+ * comparisons, nodes visited and a latency histogram with power of two
+ * buckets. All counters are LongAdders,
+ * so recording from many threads does not contend on one memory location.
+ *
+ * snapshot() copies the counters for scraping and reset() zeroes them. Since
+ * the counters are read one at a time, a snapshot taken while the tree is in
+ * use may mix counts from slightly different moments.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLMetrics implements AVLMetricsListener {
+
+    // bucket 0 holds 0ns, bucket b holds [2^(b - 1), 2^b) ns
+    private static final int BUCKETS = 64;
+    private static final int OPERATIONS = Operation.values().length;
+
+    private final LongAdder singleRotations = new LongAdder();
+    private final LongAdder doubleRotations = new LongAdder();
+    private final LongAdder allComparisons = new LongAdder();
+    private final LongAdder[] counts = adders(OPERATIONS);
+    private final LongAdder[] comparisons = adders(OPERATIONS);
+    private final LongAdder[] nodesVisited = adders(OPERATIONS);
+    private final LongAdder[][] latencies = new LongAdder[OPERATIONS][];
+
+    /**
+     * Creates metrics with every count at zero.
+     */
+    public AVLMetrics() {
+        for (int i = 0; i < OPERATIONS; i++) {
+            latencies[i] = adders(BUCKETS);
+        }
+    }
+
+    @Override
+    public void rotated(boolean doubleRotation) {
+        if (doubleRotation) {
+            doubleRotations.increment();
+        } else {
+            singleRotations.increment();
+        }
+    }
+
+    @Override
+    public void compared() {
+        allComparisons.increment();
+    }
+
+    @Override
+    public void completed(Operation operation, int comparisons,
+            int nodesVisited, long nanos) {
+        int i = operation.ordinal();
+        counts[i].increment();
+        this.comparisons[i].add(comparisons);
+        this.nodesVisited[i].add(nodesVisited);
+        latencies[i][bucket(nanos)].increment();
+    }
+
+    /**
+     * Copies the current counts.
+     *
+     * @return Snapshot the counts as of now
+     */
+    public Snapshot snapshot() {
+        long[][] histograms = new long[OPERATIONS][];
+        for (int i = 0; i < OPERATIONS; i++) {
+            histograms[i] = sums(latencies[i]);
+        }
+        return new Snapshot(singleRotations.sum(), doubleRotations.sum(),
+                allComparisons.sum(), sums(counts), sums(comparisons),
+                sums(nodesVisited), histograms);
+    }
+
+    /**
+     * Sets every count back to zero.
+     */
+    public void reset() {
+        singleRotations.reset();
+        doubleRotations.reset();
+        allComparisons.reset();
+        for (int i = 0; i < OPERATIONS; i++) {
+            counts[i].reset();
+            comparisons[i].reset();
+            nodesVisited[i].reset();
+            for (LongAdder bucket : latencies[i]) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /**
+     * @param nanos
+     *            a latency
+     * @return int the histogram bucket it falls in
+     */
+    private static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * @param n
+     *            number of adders
+     * @return LongAdder[] n new adders
+     */
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @param adders
+     *            some adders
+     * @return long[] the sum of each
+     */
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * The counts of an AVLMetrics at one point in time.
+     */
+    public static final class Snapshot {
+        private final long singleRotations;
+        private final long doubleRotations;
+        private final long allComparisons;
+        private final long[] counts;
+        private final long[] comparisons;
+        private final long[] nodesVisited;
+        private final long[][] latencies;
+
+        /**
+         * @param singleRotations
+         *            number of single rotations
+         * @param doubleRotations
+         *            number of double rotations
+         * @param allComparisons
+         *            number of comparisons by every operation
+         * @param counts
+         *            calls per operation
+         * @param comparisons
+         *            comparisons per operation
+         * @param nodesVisited
+         *            nodes visited per operation
+         * @param latencies
+         *            latency histogram per operation
+         */
+        private Snapshot(long singleRotations, long doubleRotations,
+                long allComparisons, long[] counts, long[] comparisons,
+                long[] nodesVisited, long[][] latencies) {
+            this.singleRotations = singleRotations;
+            this.doubleRotations = doubleRotations;
+            this.allComparisons = allComparisons;
+            this.counts = counts;
+            this.comparisons = comparisons;
+            this.nodesVisited = nodesVisited;
+            this.latencies = latencies;
+        }
+
+        /**
+         * @return long number of single rotations
+         */
+        public long getSingleRotations() {
+            return singleRotations;
+        }
+
+        /**
+         * @return long number of double rotations
+         */
+        public long getDoubleRotations() {
+            return doubleRotations;
+        }
+
+        /**
+         * Gets the number of comparisons made by everything the tree did,
+         * including the splits, joins, batch and set operations and
+         * navigation that have no count of their own.
+         *
+         * @return long number of comparisons
+         */
+        public long getAllComparisons() {
+            return allComparisons;
+        }
+
+        /**
+         * @param operation
+         *            an operation
+         * @return long how many times it ran
+         */
+        public long getCount(Operation operation) {
+            return counts[operation.ordinal()];
+        }
+
+        /**
+         * @param operation
+         *            an operation
+         * @return long total comparisons made by it
+         */
+        public long getComparisons(Operation operation) {
+            return comparisons[operation.ordinal()];
+        }
+
+        /**
+         * @param operation
+         *            an operation
+         * @return long total nodes visited by it
+         */
+        public long getNodesVisited(Operation operation) {
+            return nodesVisited[operation.ordinal()];
+        }
+
+        /**
+         * Gets the latency histogram of an operation. Entry 0 counts calls
+         * that took 0ns and entry b counts calls that took at least
+         * 2^(b - 1) and less than 2^b nanoseconds.
+         *
+         * @param operation
+         *            an operation
+         * @return long[] its latency histogram
+         */
+        public long[] getLatencyHistogram(Operation operation) {
+            return latencies[operation.ordinal()].clone();
+        }
+
+        /**
+         * Estimates a latency percentile of an operation from its histogram.
+         * The answer is the upper end of the bucket the percentile falls in,
+         * so it is at most twice the true value.
+         *
+         * @param operation
+         *            an operation
+         * @param percentile
+         *            the percentile wanted, from 0 to 100
+         * @return long the latency in nanoseconds, 0 if it never ran
+         * @throws IllegalArgumentException
+         *             if percentile is not between 0 and 100
+         */
+        public long getLatencyPercentile(Operation operation,
+                double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException(
+                        "percentile must be between 0 and 100");
+            }
+            long[] histogram = latencies[operation.ordinal()];
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            long seen = 0;
+            for (int b = 0; b < histogram.length; b++) {
+                seen += histogram[b];
+                if (seen > 0 && seen >= percentile / 100 * total) {
+                    return b == 0 ? 0 : b == BUCKETS - 1 ? Long.MAX_VALUE
+                            : (1L << b) - 1;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Receives metrics from an AVL tree it has been installed on with
+ * AVL.setMetricsListener. Batch and set operations compare and rebalance
+ * subtrees in parallel, so compared and rotated can be called from several
+ * threads at once and implementations must be thread-safe.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public interface AVLMetricsListener {
+
+    /**
+     * Operations whose cost is reported to completed.
+     */
+    enum Operation {
+        ADD, REMOVE, GET, CONTAINS
+    }
+
+    /**
+     * Called each time the tree rotates to rebalance a node.
+     *
+     * @param doubleRotation
+     *            true for a double rotation, false for a single rotation
+     */
+    void rotated(boolean doubleRotation);
+
+    /**
+     * Called each time the tree compares two elements, whatever operation
+     * the comparison is part of: the operations reported to completed, but
+     * also splits and joins, batch and set operations, and navigation such
+     * as floor and rank. A tree being built has no listener yet, so its
+     * construction is never counted.
+     */
+    void compared();
+
+    /**
+     * Called when an operation finishes, including when it throws because
+     * the data was not in the tree.
+     *
+     * @param operation
+     *            the operation
+     * @param comparisons
+     *            number of comparisons the operation made
+     * @param nodesVisited
+     *            number of nodes on the path the operation walked, which
+     *            for remove includes the walk down to a successor
+     * @param nanos
+     *            how long the operation took in nanoseconds
+     */
+    void completed(Operation operation, int comparisons, int nodesVisited,
+            long nanos);
+}
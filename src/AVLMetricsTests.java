@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the counts AVL reports to AVLMetrics.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLMetricsTests {
+    private static final int TIMEOUT = 200;
+    private AVL<Integer> avlTree;
+    private AVLMetrics metrics;
+
+    @Before
+    public void setup() {
+        avlTree = new AVL<>();
+        metrics = new AVLMetrics();
+        avlTree.setMetricsListener(metrics);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testRotations() {
+        // 1 to 7 in order rotates once each at 3, 5, 6 and 7
+        for (int i = 1; i <= 7; i++) {
+            avlTree.add(i);
+        }
+        AVLMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(4, snapshot.getSingleRotations());
+        assertEquals(0, snapshot.getDoubleRotations());
+
+        metrics.reset();
+        avlTree.clear();
+        avlTree.add(3);
+        avlTree.add(1);
+        avlTree.add(2);
+        snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getSingleRotations());
+        assertEquals(1, snapshot.getDoubleRotations());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testPathCounts() {
+        for (int i = 1; i <= 7; i++) {
+            avlTree.add(i);
+        }
+        AVLMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(7, snapshot.getCount(AVLMetricsListener.Operation.ADD));
+        // depths of 1 to 7 when each is added
+        assertEquals(0 + 1 + 2 + 2 + 3 + 3 + 3,
+                snapshot.getComparisons(AVLMetricsListener.Operation.ADD));
+
+        // the tree is now perfect with 4 at the root
+        metrics.reset();
+        avlTree.contains(1);
+        avlTree.contains(8);
+        avlTree.get(4);
+        snapshot = metrics.snapshot();
+        assertEquals(2,
+                snapshot.getCount(AVLMetricsListener.Operation.CONTAINS));
+        assertEquals(6, snapshot
+                .getComparisons(AVLMetricsListener.Operation.CONTAINS));
+        assertEquals(1, snapshot.getNodesVisited(
+                AVLMetricsListener.Operation.GET));
+
+        // removing the root walks 6 and 5 to find the successor
+        avlTree.remove(4);
+        snapshot = metrics.snapshot();
+        assertEquals(1, snapshot
+                .getComparisons(AVLMetricsListener.Operation.REMOVE));
+        assertEquals(3, snapshot
+                .getNodesVisited(AVLMetricsListener.Operation.REMOVE));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testAllComparisons() {
+        for (int i = 1; i <= 7; i++) {
+            avlTree.add(i);
+        }
+        AVLMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(snapshot.getComparisons(
+                AVLMetricsListener.Operation.ADD),
+                snapshot.getAllComparisons());
+
+        // operations with no count of their own still compare
+        metrics.reset();
+        avlTree.floor(5);
+        assertEquals(3, metrics.snapshot().getAllComparisons());
+        avlTree.addAll(Arrays.asList(0, 8));
+        long afterBatch = metrics.snapshot().getAllComparisons();
+        assertTrue(afterBatch > 3);
+        avlTree.unionWith(new AVL<>(Arrays.asList(9)));
+        assertTrue(metrics.snapshot().getAllComparisons() > afterBatch);
+        assertEquals(0, metrics.snapshot().getCount(
+                AVLMetricsListener.Operation.ADD));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testFailedOperationsAreCounted() {
+        avlTree.add(1);
+        try {
+            avlTree.remove(2);
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            avlTree.get(2);
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        AVLMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1,
+                snapshot.getCount(AVLMetricsListener.Operation.REMOVE));
+        assertEquals(1, snapshot.getCount(AVLMetricsListener.Operation.GET));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testLatencyHistogram() {
+        for (int i = 0; i < 100; i++) {
+            avlTree.add(i);
+        }
+        AVLMetrics.Snapshot snapshot = metrics.snapshot();
+        long total = 0;
+        for (long count : snapshot.getLatencyHistogram(
+                AVLMetricsListener.Operation.ADD)) {
+            total += count;
+        }
+        assertEquals(100, total);
+        long median = snapshot.getLatencyPercentile(
+                AVLMetricsListener.Operation.ADD, 50);
+        long p99 = snapshot.getLatencyPercentile(
+                AVLMetricsListener.Operation.ADD, 99);
+        assertTrue(median <= p99);
+        assertEquals(0, snapshot.getLatencyPercentile(
+                AVLMetricsListener.Operation.GET, 99));
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().getCount(
+                AVLMetricsListener.Operation.ADD));
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testParallelBatchRotations() {
+        List<Integer> batch = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            batch.add(i * 2);
+        }
+        avlTree.add(-1);
+        avlTree.addAll(batch);
+        avlTree.removeAll(batch.subList(0, 25000));
+        AVLMetrics.Snapshot snapshot = metrics.snapshot();
+        assertTrue(snapshot.getSingleRotations()
+                + snapshot.getDoubleRotations() > 0);
+        assertEquals(25001, avlTree.size());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testTurnOff() {
+        avlTree.setMetricsListener(null);
+        assertNull(avlTree.getMetricsListener());
+        for (int i = 0; i < 10; i++) {
+            avlTree.add(i);
+        }
+        assertEquals(0, metrics.snapshot().getSingleRotations());
+        assertEquals(0, metrics.snapshot().getCount(
+                AVLMetricsListener.Operation.ADD));
+    }
+}
@@ -0,0 +1,131 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import org.junit.Test;
+
+/**
+ * Tests the compact layout of AVLNode.
+ *
+ * JOL is not on the classpath, so the footprint is measured with the
+ * thread's allocated-bytes counter: allocating a batch of AVLNodes is
+ * compared with allocating as many nodes of the same shape that still have
+ * an int height and an int balance factor.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLNodeTests {
+    private static final int TIMEOUT = 200;
+    private static final int NODES = 100000;
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testLayout() {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        assumeTrue(threads != null);
+        AVLNode<?>[] nodes = new AVLNode<?>[NODES];
+        WideNode[] wideNodes = new WideNode[NODES];
+        long id = Thread.currentThread().getId();
+
+        long start = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < NODES; i++) {
+            nodes[i] = new AVLNode<Integer>(null);
+        }
+        long compact = threads.getThreadAllocatedBytes(id) - start;
+
+        start = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < NODES; i++) {
+            wideNodes[i] = new WideNode();
+        }
+        long wide = threads.getThreadAllocatedBytes(id) - start;
+
+        // 48 bytes down to 40 with compressed references; without them
+        // both round up to 56
+        double saved = (double) (wide - compact) / NODES;
+        assertTrue("saved " + saved + " bytes per node",
+                saved >= (compressedOops() ? 7.5 : -0.5));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testBalanceFactorFromHeights() {
+        AVLNode<Integer> node = new AVLNode<>(2);
+        assertEquals(0, node.getBalanceFactor());
+
+        AVLNode<Integer> left = new AVLNode<>(1);
+        node.setLeft(left);
+        node.setHeight(1);
+        assertEquals(1, node.getBalanceFactor());
+
+        // mid-rebalance a node can be two taller on one side
+        AVLNode<Integer> right = new AVLNode<>(3);
+        right.setHeight(2);
+        node.setRight(right);
+        assertEquals(-2, node.getBalanceFactor());
+    }
+
+    @Test(timeout = TIMEOUT)
+    @SuppressWarnings("deprecation")
+    public void testSetBalanceFactorBeforeChildren() {
+        // code written for a stored balance factor may set it first
+        AVLNode<Integer> node = new AVLNode<>(2);
+        node.setBalanceFactor(1);
+        assertEquals(0, node.getBalanceFactor());
+        node.setLeft(new AVLNode<>(1));
+        node.setHeight(1);
+        assertEquals(1, node.getBalanceFactor());
+        node.setBalanceFactor(0);
+        assertEquals(1, node.getBalanceFactor());
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testHeightTooLarge() {
+        new AVLNode<>(1).setHeight(Byte.MAX_VALUE + 1);
+    }
+
+    /**
+     * @return com.sun.management.ThreadMXBean the thread bean if it can
+     *         count allocations, otherwise null
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory
+                .getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return boolean whether the JVM uses compressed references
+     */
+    private static boolean compressedOops() {
+        HotSpotDiagnosticMXBean hotSpot = ManagementFactory
+                .getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        return hotSpot == null || Boolean.parseBoolean(hotSpot.getVMOption(
+                "UseCompressedOops").getValue());
+    }
+
+    /**
+     * The fields AVLNode would have with an int height and an int balance
+     * factor
+     */
+    @SuppressWarnings("unused")
+    private static final class WideNode {
+        private Object data;
+        private WideNode left;
+        private WideNode right;
+        private long digest;
+        private int size;
+        private int height;
+        private int balanceFactor;
+    }
+}
@@ -0,0 +1,402 @@
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * A NavigableSet backed by an AVL tree. Changes to the set write through to
+ * the tree and changes to the tree show up in the set. The views returned by
+ * subSet, headSet, tailSet and descendingSet are backed by the same tree and
+ * never copy data.
+ *
+ * Navigation and membership are O(log n). size() of a range view is also
+ * O(log n) since it is counted with the tree's subtree sizes.
+ *
+ * As the java.util contracts require, null elements are rejected with a
+ * NullPointerException.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLSet<T extends Comparable<? super T>> extends AbstractSet<T>
+        implements NavigableSet<T> {
+
+    private final AVL<T> tree;
+    // bounds of this view in ascending order, null when unbounded
+    private final T lo;
+    private final boolean loInclusive;
+    private final T hi;
+    private final boolean hiInclusive;
+    private final boolean descending;
+
+    /**
+     * Creates an empty set backed by a new AVL tree.
+     */
+    public AVLSet() {
+        this(new AVL<T>());
+    }
+
+    /**
+     * Creates a set view of an existing AVL tree.
+     *
+     * @param tree
+     *            the tree backing this set
+     * @throws IllegalArgumentException
+     *             if tree is null
+     */
+    public AVLSet(AVL<T> tree) {
+        this(tree, null, false, null, false, false);
+        if (tree == null) {
+            throw new IllegalArgumentException("Tree given is null");
+        }
+    }
+
+    /**
+     * Creates a view of a range of the tree.
+     *
+     * @param tree
+     *            the tree backing this set
+     * @param lo
+     *            lower bound, null if there is none
+     * @param loInclusive
+     *            whether the lower bound is in the view
+     * @param hi
+     *            upper bound, null if there is none
+     * @param hiInclusive
+     *            whether the upper bound is in the view
+     * @param descending
+     *            whether the view runs from largest to smallest
+     */
+    private AVLSet(AVL<T> tree, T lo, boolean loInclusive, T hi,
+            boolean hiInclusive, boolean descending) {
+        this.tree = tree;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * @param data
+     *            data being checked
+     * @return boolean whether data is below the range of this view
+     */
+    private boolean tooLow(T data) {
+        if (lo == null) {
+            return false;
+        }
+        int i = tree.compare(data, lo);
+        return i < 0 || (i == 0 && !loInclusive);
+    }
+
+    /**
+     * @param data
+     *            data being checked
+     * @return boolean whether data is above the range of this view
+     */
+    private boolean tooHigh(T data) {
+        if (hi == null) {
+            return false;
+        }
+        int i = tree.compare(data, hi);
+        return i > 0 || (i == 0 && !hiInclusive);
+    }
+
+    /**
+     * @param data
+     *            data being checked
+     * @return boolean whether data is in the range of this view
+     */
+    private boolean inRange(T data) {
+        return !tooLow(data) && !tooHigh(data);
+    }
+
+    /**
+     * @return T smallest data in range, or null
+     */
+    private T lowest() {
+        T data;
+        if (lo == null) {
+            data = tree.size() == 0 ? null : tree.first();
+        } else {
+            data = loInclusive ? tree.ceiling(lo) : tree.higher(lo);
+        }
+        return data == null || tooHigh(data) ? null : data;
+    }
+
+    /**
+     * @return T largest data in range, or null
+     */
+    private T highest() {
+        T data;
+        if (hi == null) {
+            data = tree.size() == 0 ? null : tree.last();
+        } else {
+            data = hiInclusive ? tree.floor(hi) : tree.lower(hi);
+        }
+        return data == null || tooLow(data) ? null : data;
+    }
+
+    /**
+     * @param data
+     *            data being searched for
+     * @param inclusive
+     *            whether data itself counts
+     * @return T smallest data in range at or above data, or null
+     */
+    private T above(T data, boolean inclusive) {
+        if (tooLow(data)) {
+            return lowest();
+        }
+        T found = inclusive ? tree.ceiling(data) : tree.higher(data);
+        return found == null || tooHigh(found) ? null : found;
+    }
+
+    /**
+     * @param data
+     *            data being searched for
+     * @param inclusive
+     *            whether data itself counts
+     * @return T largest data in range at or below data, or null
+     */
+    private T below(T data, boolean inclusive) {
+        if (tooHigh(data)) {
+            return highest();
+        }
+        T found = inclusive ? tree.floor(data) : tree.lower(data);
+        return found == null || tooLow(found) ? null : found;
+    }
+
+    /**
+     * @param data
+     *            data passed in by the caller
+     * @return T data, once checked not to be null
+     */
+    private T checkNull(T data) {
+        if (data == null) {
+            throw new NullPointerException("AVLSet does not allow null");
+        }
+        return data;
+    }
+
+    @Override
+    public T lower(T e) {
+        checkNull(e);
+        return descending ? above(e, false) : below(e, false);
+    }
+
+    @Override
+    public T floor(T e) {
+        checkNull(e);
+        return descending ? above(e, true) : below(e, true);
+    }
+
+    @Override
+    public T ceiling(T e) {
+        checkNull(e);
+        return descending ? below(e, true) : above(e, true);
+    }
+
+    @Override
+    public T higher(T e) {
+        checkNull(e);
+        return descending ? below(e, false) : above(e, false);
+    }
+
+    @Override
+    public T first() {
+        T data = descending ? highest() : lowest();
+        if (data == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return data;
+    }
+
+    @Override
+    public T last() {
+        T data = descending ? lowest() : highest();
+        if (data == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return data;
+    }
+
+    @Override
+    public T pollFirst() {
+        T data = descending ? highest() : lowest();
+        if (data != null) {
+            tree.remove(data);
+        }
+        return data;
+    }
+
+    @Override
+    public T pollLast() {
+        T data = descending ? lowest() : highest();
+        if (data != null) {
+            tree.remove(data);
+        }
+        return data;
+    }
+
+    @Override
+    public int size() {
+        if (lo == null && hi == null) {
+            return tree.size();
+        }
+        int below = lo == null ? 0 : tree.countBelow(lo, !loInclusive);
+        int upTo = hi == null ? tree.size() : tree.countBelow(hi,
+                hiInclusive);
+        return Math.max(0, upTo - below);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return lowest() == null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        T data = checkNull((T) o);
+        return inRange(data) && tree.contains(data);
+    }
+
+    @Override
+    public boolean add(T e) {
+        checkNull(e);
+        if (!inRange(e)) {
+            throw new IllegalArgumentException("Data is outside this view");
+        }
+        int before = tree.size();
+        tree.add(e);
+        return tree.size() != before;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        T data = checkNull((T) o);
+        if (!inRange(data) || !tree.contains(data)) {
+            return false;
+        }
+        tree.remove(data);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (lo == null && hi == null) {
+            tree.clear();
+        } else {
+            super.clear();
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (descending) {
+            return tree.iterator(hi, hiInclusive, lo, loInclusive, true);
+        }
+        return tree.iterator(lo, loInclusive, hi, hiInclusive, false);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return new AVLSet<T>(tree, lo, loInclusive, hi, hiInclusive,
+                !descending);
+    }
+
+    /**
+     * Checks that a bound given for a new view lies within this view
+     *
+     * @param bound
+     *            the new bound
+     * @param inclusive
+     *            whether the new bound is inclusive
+     */
+    private void checkBound(T bound, boolean inclusive) {
+        checkNull(bound);
+        if (lo != null) {
+            int i = tree.compare(bound, lo);
+            if (i < 0 || (i == 0 && !loInclusive && inclusive)) {
+                throw new IllegalArgumentException("Bound is outside view");
+            }
+        }
+        if (hi != null) {
+            int i = tree.compare(bound, hi);
+            if (i > 0 || (i == 0 && !hiInclusive && inclusive)) {
+                throw new IllegalArgumentException("Bound is outside view");
+            }
+        }
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive,
+            T toElement, boolean toInclusive) {
+        checkBound(fromElement, fromInclusive);
+        checkBound(toElement, toInclusive);
+        int i = tree.compare(fromElement, toElement);
+        if (descending ? i < 0 : i > 0) {
+            throw new IllegalArgumentException("fromElement is after toElement");
+        }
+        if (descending) {
+            return new AVLSet<T>(tree, toElement, toInclusive, fromElement,
+                    fromInclusive, true);
+        }
+        return new AVLSet<T>(tree, fromElement, fromInclusive, toElement,
+                toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        checkBound(toElement, inclusive);
+        if (descending) {
+            return new AVLSet<T>(tree, toElement, inclusive, hi, hiInclusive,
+                    true);
+        }
+        return new AVLSet<T>(tree, lo, loInclusive, toElement, inclusive,
+                false);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        checkBound(fromElement, inclusive);
+        if (descending) {
+            return new AVLSet<T>(tree, lo, loInclusive, fromElement, inclusive,
+                    true);
+        }
+        return new AVLSet<T>(tree, fromElement, inclusive, hi, hiInclusive,
+                false);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return descending ? Collections.reverseOrder(tree.comparator())
+                : tree.comparator();
+    }
+}
@@ -0,0 +1,143 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests AVLSet against java.util.TreeSet.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class AVLSetTests {
+    private static final int TIMEOUT = 200;
+    private AVL<Integer> avlTree;
+    private AVLSet<Integer> set;
+    private TreeSet<Integer> expected;
+
+    @Before
+    public void setup() {
+        avlTree = new AVL<>();
+        set = new AVLSet<>(avlTree);
+        expected = new TreeSet<>();
+        Random random = new Random(1332);
+        for (int i = 0; i < 200; i++) {
+            int key = random.nextInt(500) * 2;
+            set.add(key);
+            expected.add(key);
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testNavigation() {
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        for (int key = -3; key < 1003; key++) {
+            assertEquals(expected.floor(key), set.floor(key));
+            assertEquals(expected.ceiling(key), set.ceiling(key));
+            assertEquals(expected.lower(key), set.lower(key));
+            assertEquals(expected.higher(key), set.higher(key));
+            assertEquals(expected.contains(key), set.contains(key));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testAddRemovePoll() {
+        assertFalse(set.add(expected.first()));
+        assertTrue(set.add(1));
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+
+        assertEquals(expected.pollFirst(), set.pollFirst());
+        assertEquals(expected.pollLast(), set.pollLast());
+        assertEquals(expected.size(), avlTree.size());
+        assertEquals(new ArrayList<>(expected), avlTree.inorder());
+
+        set.clear();
+        assertNull(set.pollFirst());
+        assertTrue(set.isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testViews() {
+        checkView(expected.subSet(100, true, 600, false),
+                set.subSet(100, true, 600, false));
+        checkView(expected.headSet(301, true), set.headSet(301, true));
+        checkView(expected.tailSet(250, false), set.tailSet(250, false));
+        checkView(expected.descendingSet(), set.descendingSet());
+        checkView(expected.descendingSet().headSet(700, true),
+                set.descendingSet().headSet(700, true));
+        checkView(expected.descendingSet().subSet(800, false, 200, true)
+                .tailSet(500, true), set.descendingSet().subSet(800, false,
+                200, true).tailSet(500, true));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testViewsWriteThrough() {
+        NavigableSet<Integer> view = set.subSet(100, true, 200, true);
+        view.add(101);
+        assertTrue(avlTree.contains(101));
+
+        avlTree.add(103);
+        assertTrue(view.contains(103));
+
+        Iterator<Integer> iterator = view.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 1) {
+                iterator.remove();
+            }
+        }
+        expected.subSet(100, true, 200, true).clear();
+        view.clear();
+        assertTrue(view.isEmpty());
+        assertEquals(new ArrayList<>(expected), avlTree.inorder());
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testViewAddOutOfRange() {
+        set.headSet(10).add(10);
+    }
+
+    @Test(timeout = TIMEOUT, expected = NullPointerException.class)
+    public void testNull() {
+        set.contains(null);
+    }
+
+    /**
+     * Checks a view answers the same as the matching TreeSet view
+     *
+     * @param expectedView
+     *            TreeSet view
+     * @param view
+     *            AVLSet view
+     */
+    private void checkView(NavigableSet<Integer> expectedView,
+            NavigableSet<Integer> view) {
+        assertEquals(expectedView.size(), view.size());
+        assertEquals(new ArrayList<>(expectedView), new ArrayList<>(view));
+        assertEquals(
+                new ArrayList<>(expectedView.descendingSet()),
+                new ArrayList<>(view.descendingSet()));
+        assertEquals(expectedView.first(), view.first());
+        assertEquals(expectedView.last(), view.last());
+        for (int key : Arrays.asList(-1, 99, 100, 101, 300, 301, 599, 600,
+                1001)) {
+            assertEquals(expectedView.floor(key), view.floor(key));
+            assertEquals(expectedView.ceiling(key), view.ceiling(key));
+            assertEquals(expectedView.lower(key), view.lower(key));
+            assertEquals(expectedView.higher(key), view.higher(key));
+            assertEquals(expectedView.contains(key), view.contains(key));
+        }
+    }
+}
@@ -1,8 +1,33 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * These tests are not exhaustive.
@@ -14,6 +39,9 @@ public class AVLStudentTests {
     private static final int TIMEOUT = 200;
     private AVL<Integer> avlTree;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setup() {
         avlTree = new AVL<>();
@@ -107,6 +135,18 @@ public class AVLStudentTests {
         assertSame(maximum, avlTree.get(new Integer(646)));
     }
 
+    @Test(timeout = TIMEOUT)
+    public void testContains() {
+        assertFalse(avlTree.contains(646));
+
+        avlTree.add(526);
+        avlTree.add(386);
+        avlTree.add(477);
+
+        assertTrue(avlTree.contains(477));
+        assertFalse(avlTree.contains(478));
+    }
+
     @Test(timeout = TIMEOUT)
     public void testEquals() {
         avlTree.add(526);
@@ -124,4 +164,699 @@ public class AVLStudentTests {
 
         assertEquals(avlTree, otherAvlTree);
     }
-}
\ No newline at end of file
+
+    @Test(timeout = TIMEOUT)
+    public void testSortedConstructor() {
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            data.add(i);
+        }
+        avlTree = new AVL<>(data);
+
+        assertEquals(1000, avlTree.size());
+        assertEquals(9, avlTree.height());
+        assertEquals(data, avlTree.inorder());
+        assertEquals(avlTree.height(), checkHeights(avlTree.getRoot()));
+        assertEquals(avlTree, AVL.fromSorted(data));
+
+        // duplicates fall back to adding one at a time
+        avlTree = new AVL<>(Arrays.asList(1, 2, 2, 3));
+        assertEquals(3, avlTree.size());
+        assertEquals(Arrays.asList(1, 2, 3), avlTree.inorder());
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testFromSortedUnsorted() {
+        AVL.fromSorted(Arrays.asList(1, 3, 2));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testIterators() {
+        for (int i : new int[] { 5, 2, 8, 1, 4, 6, 9, 0, 3, 7 }) {
+            avlTree.add(i);
+        }
+
+        assertEquals(avlTree.inorder(), drain(avlTree.iterator()));
+        assertEquals(avlTree.inorder(), drain(avlTree.inorderIterator()));
+        assertEquals(avlTree.preorder(), drain(avlTree.preorderIterator()));
+        assertEquals(avlTree.postorder(), drain(avlTree.postorderIterator()));
+        assertEquals(avlTree.levelorder(),
+                drain(avlTree.levelorderIterator()));
+
+        avlTree.clear();
+        assertFalse(avlTree.iterator().hasNext());
+        assertFalse(avlTree.postorderIterator().hasNext());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testLevelorder() {
+        assertEquals(new ArrayList<Integer>(), avlTree.levelorder());
+
+        for (int i : new int[] { 5, 2, 8, 1, 4, 6, 9, 0, 3, 7 }) {
+            avlTree.add(i);
+        }
+        assertEquals(Arrays.asList(5, 2, 8, 1, 4, 6, 9, 0, 3, 7),
+                avlTree.levelorder());
+
+        List<Integer> levels = new ArrayList<>();
+        avlTree.levelorder((data, level) -> levels.add(level));
+        assertEquals(Arrays.asList(0, 1, 1, 2, 2, 2, 2, 3, 3, 3), levels);
+
+        // a full bottom level is the widest the queue ever gets
+        avlTree = new AVL<>();
+        for (int i = 0; i < 1023; i++) {
+            avlTree.add(i);
+        }
+        assertEquals(avlTree.levelorder(),
+                drain(avlTree.levelorderIterator()));
+        assertEquals(1023, avlTree.levelorder().size());
+
+        // the iterator's queue starts small and grows while wrapped around
+        Random random = new Random(1332);
+        avlTree = new AVL<>();
+        for (int i = 0; i < 300; i++) {
+            avlTree.add(random.nextInt(1000));
+            assertEquals(avlTree.levelorder(),
+                    drain(avlTree.levelorderIterator()));
+        }
+    }
+
+    @Test(timeout = TIMEOUT, expected = ConcurrentModificationException.class)
+    public void testLevelorderVisitorFailsFast() {
+        for (int i = 0; i < 10; i++) {
+            avlTree.add(i);
+        }
+        avlTree.levelorder((data, level) -> avlTree.add(data + 100));
+    }
+
+    @Test(timeout = TIMEOUT, expected = ConcurrentModificationException.class)
+    public void testIteratorFailsFast() {
+        avlTree.add(1);
+        avlTree.add(2);
+        Iterator<Integer> iterator = avlTree.preorderIterator();
+        iterator.next();
+        avlTree.add(3);
+        iterator.next();
+    }
+
+    @Test(timeout = TIMEOUT, expected = NoSuchElementException.class)
+    public void testIteratorExhausted() {
+        avlTree.add(1);
+        Iterator<Integer> iterator = avlTree.iterator();
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testOrderStatistics() {
+        Random random = new Random(1332);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) == 0 && avlTree.contains(key)) {
+                avlTree.remove(key);
+                expected.remove(key);
+            } else {
+                avlTree.add(key);
+                expected.add(key);
+            }
+        }
+        assertEquals(avlTree.size(), avlTree.getRoot().getSize());
+
+        List<Integer> sorted = new ArrayList<>(expected);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), avlTree.select(i));
+            assertEquals(i, avlTree.rank(sorted.get(i)));
+        }
+        for (int key = -1; key <= 1000; key += 7) {
+            assertEquals(expected.headSet(key).size(), avlTree.rank(key));
+            assertEquals(expected.subSet(key, true, key + 100, true).size(),
+                    avlTree.rangeCount(key, key + 100));
+        }
+        assertEquals(0, avlTree.rangeCount(10, 5));
+    }
+
+    @Test(timeout = TIMEOUT, expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() {
+        avlTree.add(1);
+        avlTree.select(1);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSplitAndJoin() {
+        List<Integer> data = new ArrayList<>();
+        Random random = new Random(1332);
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt(5000);
+            avlTree.add(key);
+        }
+        data.addAll(avlTree.inorder());
+
+        for (int pivot : new int[] { -1, data.get(0), 2500, data.get(500),
+            data.get(data.size() - 1), 5000 }) {
+            AVL.Split<Integer> split = avlTree.split(pivot);
+            assertEquals(0, avlTree.size());
+            assertEquals(null, avlTree.getRoot());
+
+            AVL<Integer> less = split.getLess();
+            AVL<Integer> greater = split.getGreater();
+            int below = 0;
+            while (below < data.size() && data.get(below) < pivot) {
+                below++;
+            }
+            boolean found = below < data.size() && data.get(below) == pivot;
+            assertEquals(found ? (Integer) pivot : null, split.getPivot());
+            assertEquals(data.subList(0, below), less.inorder());
+            assertEquals(data.subList(found ? below + 1 : below, data.size()),
+                    greater.inorder());
+            assertEquals(less.size(), less.inorder().size());
+            assertEquals(less.height(), checkHeights(less.getRoot()));
+            assertEquals(greater.height(), checkHeights(greater.getRoot()));
+
+            avlTree = AVL.join(less, pivot, greater);
+            if (!found) {
+                avlTree.remove(pivot);
+            }
+            assertEquals(data, avlTree.inorder());
+            assertEquals(data.size(), avlTree.size());
+            assertEquals(avlTree.height(), checkHeights(avlTree.getRoot()));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testJoinUnevenHeights() {
+        AVL<Integer> small = new AVL<>(Arrays.asList(1));
+        List<Integer> bigData = new ArrayList<>();
+        for (int i = 10; i < 10000; i++) {
+            bigData.add(i);
+        }
+        AVL<Integer> big = new AVL<>(bigData);
+
+        avlTree = AVL.join(small, 5, big);
+        assertEquals(bigData.size() + 2, avlTree.size());
+        assertEquals((Integer) 1, avlTree.select(0));
+        assertEquals((Integer) 5, avlTree.select(1));
+        assertEquals(avlTree.height(), checkHeights(avlTree.getRoot()));
+        assertEquals(0, small.size());
+        assertEquals(0, big.size());
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testJoinOutOfOrder() {
+        AVL.join(new AVL<>(Arrays.asList(1, 6)), 5,
+                new AVL<>(Arrays.asList(7)));
+    }
+
+    @Test(timeout = TIMEOUT * 10)
+    public void testSetOperations() {
+        // big enough that the top of the recursion runs in parallel
+        Random random = new Random(1332);
+        TreeSet<Integer> expectedA = new TreeSet<>();
+        TreeSet<Integer> expectedB = new TreeSet<>();
+        AVL<Integer> otherTree = new AVL<>();
+        for (int i = 0; i < 40000; i++) {
+            int key = random.nextInt(100000);
+            avlTree.add(key);
+            expectedA.add(key);
+            key = random.nextInt(100000);
+            otherTree.add(key);
+            expectedB.add(key);
+        }
+        List<Integer> before = avlTree.preorder();
+
+        TreeSet<Integer> expected = new TreeSet<>(expectedA);
+        expected.addAll(expectedB);
+        checkSetOperation(expected, AVL.union(avlTree, otherTree));
+        expected = new TreeSet<>(expectedA);
+        expected.retainAll(expectedB);
+        checkSetOperation(expected, AVL.intersection(avlTree, otherTree));
+        expected = new TreeSet<>(expectedA);
+        expected.removeAll(expectedB);
+        checkSetOperation(expected, AVL.difference(avlTree, otherTree));
+
+        assertEquals(before, avlTree.preorder());
+        assertEquals(new ArrayList<>(expectedB), otherTree.inorder());
+        checkSetOperation(expectedA, AVL.union(avlTree, new AVL<>()));
+        checkSetOperation(new TreeSet<>(),
+                AVL.intersection(new AVL<>(), avlTree));
+    }
+
+    @Test(timeout = TIMEOUT * 25)
+    public void testSetOperationsUsePool() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Comparator<Integer> recording = recording(threads);
+        AVL<Integer> a = AVL.orderedBy(recording);
+        AVL<Integer> b = AVL.orderedBy(recording);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 100000; i++) {
+            a.add(i * 2);
+            b.add(i * 3);
+            expected.add(i * 2);
+            expected.add(i * 3);
+        }
+        // a fork only runs on a worker if one takes it before the caller
+        // gets back to it, so allow a few tries
+        for (int round = 0; round < 5 && !anyPoolWorker(threads); round++) {
+            threads.clear();
+            checkSetOperation(expected, AVL.union(a, b));
+        }
+        assertTrue(anyPoolWorker(threads));
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testConsumingSetOperations() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) {
+            avlTree.add(i * 2);
+            expected.add(i * 2);
+        }
+        AVLNode<Integer> smallest = avlTree.getRoot();
+        while (smallest.getLeft() != null) {
+            smallest = smallest.getLeft();
+        }
+
+        AVL<Integer> small = new AVL<>(Arrays.asList(39001, 39003, 50000));
+        avlTree.unionWith(small);
+        expected.addAll(Arrays.asList(39001, 39003, 50000));
+        checkSetOperation(expected, avlTree);
+        assertEquals(0, small.size());
+        // far from the merged keys, the original nodes are still in place
+        AVLNode<Integer> node = avlTree.getRoot();
+        while (node.getLeft() != null) {
+            node = node.getLeft();
+        }
+        assertSame(smallest, node);
+
+        avlTree.subtract(new AVL<>(Arrays.asList(0, 39001, 7)));
+        expected.removeAll(Arrays.asList(0, 39001));
+        checkSetOperation(expected, avlTree);
+
+        avlTree.intersectWith(new AVL<>(Arrays.asList(2, 4, 5, 50000)));
+        checkSetOperation(new TreeSet<>(Arrays.asList(2, 4, 50000)), avlTree);
+
+        avlTree.subtract(avlTree);
+        assertEquals(0, avlTree.size());
+    }
+
+    @Test(timeout = TIMEOUT * 25)
+    public void testBatchedThreads() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AVL<Integer> tree = AVL.orderedBy(recording(threads));
+        List<Integer> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i * 7);
+        }
+        // small batches never leave the caller's thread
+        tree.addAll(batch);
+        tree.removeAll(batch.subList(0, 50));
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        assertEquals(batch.subList(50, 100), tree.inorder());
+
+        batch.clear();
+        for (int i = 0; i < 100000; i++) {
+            batch.add(i * 3);
+        }
+        for (int round = 0; round < 5 && !anyPoolWorker(threads); round++) {
+            threads.clear();
+            tree.addAll(batch);
+            tree.removeAll(batch);
+        }
+        assertTrue(anyPoolWorker(threads));
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testBatchedAddAllRemoveAll() {
+        Random random = new Random(1332);
+        AVL<Integer> sequential = new AVL<>();
+        for (int round = 0; round < 20; round++) {
+            List<Integer> batch = new ArrayList<>();
+            int batchSize = round % 2 == 0 ? 5000 : 50;
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(random.nextInt(20000));
+            }
+            int changed = 0;
+            if (round % 3 == 2) {
+                for (Integer key : batch) {
+                    if (sequential.contains(key)) {
+                        sequential.remove(key);
+                        changed++;
+                    }
+                }
+                assertEquals(changed, avlTree.removeAll(batch));
+            } else {
+                int before = sequential.size();
+                for (Integer key : batch) {
+                    sequential.add(key);
+                }
+                changed = sequential.size() - before;
+                assertEquals(changed, avlTree.addAll(batch));
+            }
+            assertEquals(sequential.inorder(), avlTree.inorder());
+            assertEquals(sequential.size(), avlTree.size());
+            assertEquals(avlTree.height(), checkHeights(avlTree.getRoot()));
+        }
+        assertEquals(0, avlTree.addAll(new ArrayList<Integer>()));
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testAddAllNullElement() {
+        avlTree.addAll(Arrays.asList(1, null));
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testAddScalesLogarithmically() {
+        // sequential keys rotate on almost every add; with a full-tree pass
+        // per add this would be quadratic and blow the timeout
+        int n = 200000;
+        for (int i = 0; i < n; i++) {
+            avlTree.add(i);
+        }
+
+        assertEquals(n, avlTree.size());
+        assertTrue(avlTree.height() <= maxHeight(n));
+        assertEquals(avlTree.height(), checkHeights(avlTree.getRoot()));
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testRemoveScalesLogarithmically() {
+        int n = 200000;
+        for (int i = 0; i < n; i++) {
+            avlTree.add(i);
+        }
+        // remove every other key from the front, then the rest from the back
+        for (int i = 0; i < n; i += 2) {
+            assertEquals((Integer) i, avlTree.remove(i));
+        }
+        assertEquals(n / 2, avlTree.size());
+        assertTrue(avlTree.height() <= maxHeight(n / 2));
+        assertEquals(avlTree.height(), checkHeights(avlTree.getRoot()));
+
+        for (int i = n - 1; i > 0; i -= 2) {
+            assertEquals((Integer) i, avlTree.remove(i));
+        }
+        assertEquals(0, avlTree.size());
+        assertEquals(-1, avlTree.height());
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testSnapshotRoundTrip() throws IOException {
+        Random random = new Random(1332);
+        for (int i = 0; i < 10000; i++) {
+            avlTree.add(random.nextInt());
+        }
+        File file = folder.newFile();
+        avlTree.writeSnapshot(file.toPath(), AVLKeyCodec.INTEGER);
+        AVL<Integer> loaded = AVL.readSnapshot(file.toPath(),
+                AVLKeyCodec.INTEGER);
+        assertEquals(avlTree, loaded);
+        assertEquals(avlTree.size(), loaded.size());
+        assertEquals(loaded.height(), checkHeights(loaded.getRoot()));
+
+        AVL<String> strings = new AVL<>(Arrays.asList("avl", "",
+                "\u00e9t\u00e9", "tree", "snapshot"));
+        strings.writeSnapshot(file.toPath(), AVLKeyCodec.STRING);
+        assertEquals(strings.preorder(), AVL.readSnapshot(file.toPath(),
+                AVLKeyCodec.STRING).preorder());
+
+        new AVL<Long>().writeSnapshot(file.toPath(), AVLKeyCodec.LONG);
+        assertEquals(0, AVL.readSnapshot(file.toPath(), AVLKeyCodec.LONG)
+                .size());
+    }
+
+    @Test(timeout = TIMEOUT, expected = IOException.class)
+    public void testSnapshotTruncated() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            avlTree.add(i);
+        }
+        File file = folder.newFile();
+        avlTree.writeSnapshot(file.toPath(), AVLKeyCodec.INTEGER);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+        AVL.readSnapshot(file.toPath(), AVLKeyCodec.INTEGER);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSnapshotCorruptStringLength() throws IOException {
+        AVL<String> strings = new AVL<>(Arrays.asList("a", "b", "c"));
+        File file = folder.newFile();
+        strings.writeSnapshot(file.toPath(), AVLKeyCodec.STRING);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // the root's key length follows the magic, count and flags
+        for (int length : new int[] {-1, Integer.MAX_VALUE}) {
+            ByteBuffer.wrap(bytes).putInt(9, length);
+            Files.write(file.toPath(), bytes);
+            try {
+                AVL.readSnapshot(file.toPath(), AVLKeyCodec.STRING);
+                fail("length " + length + " was accepted");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("corrupt"));
+            }
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testStringCodecLength() {
+        for (String key : Arrays.asList("", "ascii", "caf\u00e9",
+                "\u20ac100", "\ud83d\ude00", "bad \ud83d surrogate")) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            AVLKeyCodec.STRING.encode(key, buffer);
+            assertEquals(key, buffer.position(),
+                    AVLKeyCodec.STRING.encodedLength(key));
+        }
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testComparator() {
+        AVL<Integer> reversed = AVL.orderedBy(Collections.reverseOrder());
+        TreeSet<Integer> expected = new TreeSet<>(Collections.reverseOrder());
+        Random random = new Random(1332);
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) == 0 && expected.remove(key)) {
+                assertEquals((Integer) key, reversed.remove(key));
+            } else if (expected.add(key)) {
+                reversed.add(key);
+            }
+        }
+        assertEquals(new ArrayList<>(expected), reversed.inorder());
+        assertEquals(reversed.height(), checkHeights(reversed.getRoot()));
+        assertEquals(expected.first(), reversed.first());
+        assertEquals(expected.ceiling(500), reversed.ceiling(500));
+        assertEquals(expected.headSet(500).size(), reversed.rank(500));
+        assertEquals(new ArrayList<>(expected.subSet(700, true, 300, true)),
+                new ArrayList<>(new AVLSet<>(reversed).subSet(700, true, 300,
+                        true)));
+
+        AVL.Split<Integer> parts = reversed.split(500);
+        assertEquals(new ArrayList<>(expected.headSet(500)),
+                parts.getLess().inorder());
+        AVL<Integer> joined = AVL.join(parts.getLess(), 500,
+                parts.getGreater());
+        assertSame(reversed.comparator(), joined.comparator());
+        expected.add(500);
+        assertEquals(new ArrayList<>(expected), joined.inorder());
+
+        AVL<Integer> union = AVL.union(reversed, AVL.fromSorted(
+                Arrays.asList(2000, 1500, 1000), Collections.reverseOrder()));
+        assertEquals((Integer) 2000, union.first());
+        assertEquals(new ArrayList<>(expected.descendingSet()),
+                new ArrayList<>(new AVLSet<>(joined).descendingSet()));
+        assertEquals(Collections.reverseOrder(), new AVLSet<>(joined)
+                .comparator());
+
+        AVL<String> caseless = new AVL<>(Arrays.asList("b", "A", "a", "C"),
+                String.CASE_INSENSITIVE_ORDER);
+        assertEquals(Arrays.asList("A", "b", "C"), caseless.inorder());
+        assertTrue(caseless.contains("B"));
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testHashCode() {
+        Random random = new Random(1332);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(2000);
+            if (avlTree.contains(key)) {
+                avlTree.remove(key);
+            } else {
+                avlTree.add(key);
+            }
+        }
+        // the copy is built bottom up, so its digests are worked out fresh
+        AVL<Integer> copy = AVL.union(avlTree, new AVL<>());
+        assertEquals(avlTree, copy);
+        assertEquals(avlTree.hashCode(), copy.hashCode());
+
+        Set<AVL<Integer>> versions = new HashSet<>();
+        versions.add(avlTree);
+        versions.add(copy);
+        assertEquals(1, versions.size());
+
+        // same shape, one leaf different
+        Integer last = avlTree.last();
+        copy.remove(last);
+        copy.add(last + 1);
+        assertFalse(avlTree.equals(copy));
+        assertFalse(avlTree.hashCode() == copy.hashCode());
+
+        // same data, different shape
+        AVL<Integer> leaning = new AVL<>(Arrays.asList(2, 1, 3, 4));
+        AVL<Integer> other = new AVL<>(Arrays.asList(3, 4, 2, 1));
+        assertFalse(leaning.equals(other));
+        assertFalse(leaning.hashCode() == other.hashCode());
+        other.remove(1);
+        other.add(5);
+        other.remove(5);
+        other.remove(4);
+        other.add(1);
+        other.add(4);
+        assertEquals(leaning, other);
+        assertEquals(leaning.hashCode(), other.hashCode());
+        assertEquals(new AVL<Integer>().hashCode(), new AVL<Integer>()
+                .hashCode());
+    }
+
+    @Test(timeout = TIMEOUT * 5)
+    public void testArrayTraversals() {
+        // big enough that the top of the tree is filled in parallel
+        Random random = new Random(1332);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 40000; i++) {
+            expected.add(random.nextInt(100000));
+        }
+        avlTree = AVL.fromSorted(expected);
+        int size = avlTree.size();
+        assertEquals(new ArrayList<>(expected), avlTree.inorder());
+        assertEquals(new ArrayList<>(expected),
+                Arrays.asList(avlTree.inorder(new Integer[size])));
+        assertEquals(Arrays.asList(expected.toArray()),
+                Arrays.asList(avlTree.toArray()));
+        assertEquals(drain(avlTree.preorderIterator()),
+                Arrays.asList(avlTree.preorder(new Integer[size])));
+        assertEquals(drain(avlTree.preorderIterator()), avlTree.preorder());
+        assertEquals(drain(avlTree.postorderIterator()),
+                Arrays.asList(avlTree.postorder(new Integer[size])));
+        assertEquals(drain(avlTree.postorderIterator()), avlTree.postorder());
+
+        // a worker that takes a forked subtree counts as a steal
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long steals = pool.getStealCount();
+        for (int round = 0; round < 5 && pool.getStealCount() == steals;
+                round++) {
+            avlTree.toArray();
+        }
+        assertTrue(pool.getStealCount() > steals);
+
+        // small trees are written in one pass, and extra room is untouched
+        AVL<Integer> small = new AVL<>(Arrays.asList(2, 1, 3));
+        Integer[] dest = {-1, -1, -1, -1};
+        assertSame(dest, small.postorder(dest));
+        assertEquals(Arrays.asList(1, 3, 2, -1), Arrays.asList(dest));
+        assertEquals(0, new AVL<Integer>().toArray().length);
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testArrayTraversalTooShort() {
+        avlTree.add(1);
+        avlTree.add(2);
+        avlTree.inorder(new Integer[1]);
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testCombineDifferentOrders() {
+        avlTree.add(1);
+        AVL.union(avlTree, AVL.<Integer>orderedBy(Collections.reverseOrder()));
+    }
+
+    /**
+     * Checks the result of a set operation is a valid tree of the right data
+     *
+     * @param expected
+     *            data the result should hold
+     * @param result
+     *            tree returned by the operation
+     */
+    private void checkSetOperation(TreeSet<Integer> expected,
+            AVL<Integer> result) {
+        assertEquals(expected.size(), result.size());
+        assertEquals(new ArrayList<>(expected), result.inorder());
+        assertEquals(result.height(), checkHeights(result.getRoot()));
+    }
+
+    /**
+     * Collects what is left in an iterator
+     *
+     * @param iterator
+     *            iterator being drained
+     * @return List of the data it returned
+     */
+    private List<Integer> drain(Iterator<Integer> iterator) {
+        List<Integer> data = new ArrayList<>();
+        while (iterator.hasNext()) {
+            data.add(iterator.next());
+        }
+        return data;
+    }
+
+    /**
+     * A natural order comparator that notes every thread it is called on
+     *
+     * @param threads
+     *            set the calling threads are added to
+     * @return Comparator the recording comparator
+     */
+    private Comparator<Integer> recording(Set<Thread> threads) {
+        return (x, y) -> {
+            threads.add(Thread.currentThread());
+            return x.compareTo(y);
+        };
+    }
+
+    /**
+     * @param threads
+     *            threads that did some of the work
+     * @return boolean whether any of them is a ForkJoinPool worker
+     */
+    private boolean anyPoolWorker(Set<Thread> threads) {
+        for (Thread thread : threads) {
+            if (thread instanceof ForkJoinWorkerThread) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Upper bound on the height of an AVL tree with n nodes
+     *
+     * @param n
+     *            number of nodes
+     * @return int largest height allowed
+     */
+    private int maxHeight(int n) {
+        return (int) (1.45 * Math.log(n + 2) / Math.log(2));
+    }
+
+    /**
+     * Asserts that every stored height, balance factor and size below node is
+     * right
+     *
+     * @param node
+     *            subtree being checked
+     * @return int actual height of the subtree
+     */
+    private int checkHeights(AVLNode<Integer> node) {
+        if (node == null) {
+            return -1;
+        }
+        int leftHeight = checkHeights(node.getLeft());
+        int rightHeight = checkHeights(node.getRight());
+        assertEquals(Math.max(leftHeight, rightHeight) + 1, node.getHeight());
+        assertEquals(leftHeight - rightHeight, node.getBalanceFactor());
+        assertTrue(Math.abs(node.getBalanceFactor()) <= 1);
+        int leftSize = node.getLeft() == null ? 0 : node.getLeft().getSize();
+        int rightSize = node.getRight() == null ? 0
+                : node.getRight().getSize();
+        assertEquals(leftSize + rightSize + 1, node.getSize());
+        return node.getHeight();
+    }
+}
@@ -0,0 +1,484 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An AVL tree that keeps its nodes in parallel arrays instead of node
+ * objects. A node is an int index into keys, left, right and height, and
+ * removed slots go on a free list to be reused by later adds. Per entry this
+ * costs a key reference, two ints and a byte, with no object header, and the
+ * garbage collector only has to scan the keys array.
+ *
+ * The balancing rules are the same as AVL's, so the same operations give the
+ * same shape.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class ArrayAVL<T extends Comparable<? super T>> implements
+        AVLInterface<T> {
+
+    private static final int NIL = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] keys;
+    private int[] left;
+    private int[] right;
+    private byte[] height;
+    private int root;
+    private int size;
+    // slots below this index have been handed out at least once
+    private int used;
+    // first slot of the free list, which is chained through left
+    private int free;
+
+    /**
+     * Creates an empty tree.
+     */
+    public ArrayAVL() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty tree with room for capacity nodes before the arrays
+     * have to grow.
+     *
+     * @param capacity
+     *            number of nodes to allocate up front
+     * @throws IllegalArgumentException
+     *             if capacity is negative
+     */
+    public ArrayAVL(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity is negative");
+        }
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Initializes the tree with the data in the Collection, added in the
+     * order it is in the Collection.
+     *
+     * @param data
+     *            the data to add to the tree
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null
+     */
+    public ArrayAVL(Collection<T> data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data entered is null");
+        }
+        allocate(Math.max(data.size(), 1));
+        for (T item : data) {
+            add(item);
+        }
+    }
+
+    /**
+     * Sets up empty arrays
+     *
+     * @param capacity
+     *            length of the arrays
+     */
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        height = new byte[capacity];
+        root = NIL;
+        size = 0;
+        used = 0;
+        free = NIL;
+    }
+
+    /**
+     * Takes a slot off the free list, or a fresh one if the list is empty
+     *
+     * @param data
+     *            data stored in the new node
+     * @return int index of the new node
+     */
+    private int newNode(T data) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if (used == keys.length) {
+                int capacity = keys.length + (keys.length >> 1) + 1;
+                keys = Arrays.copyOf(keys, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                height = Arrays.copyOf(height, capacity);
+            }
+            node = used++;
+        }
+        keys[node] = data;
+        left[node] = NIL;
+        right[node] = NIL;
+        height[node] = 0;
+        return node;
+    }
+
+    /**
+     * Puts a slot on the free list
+     *
+     * @param node
+     *            index of the node being freed
+     */
+    private void freeNode(int node) {
+        keys[node] = null;
+        left[node] = free;
+        free = node;
+    }
+
+    /**
+     * @param node
+     *            index of a node
+     * @return T data at that node
+     */
+    @SuppressWarnings("unchecked")
+    private T key(int node) {
+        return (T) keys[node];
+    }
+
+    @Override
+    public void add(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data given is null");
+        }
+        root = add(data, root);
+    }
+
+    /**
+     * @param data
+     *            data being added
+     * @param node
+     *            node we're currently at
+     * @return int new root of this subtree
+     */
+    private int add(T data, int node) {
+        if (node == NIL) {
+            size++;
+            return newNode(data);
+        }
+        int i = data.compareTo(key(node));
+        if (i < 0) {
+            int child = add(data, left[node]);
+            left[node] = child;
+        } else if (i > 0) {
+            int child = add(data, right[node]);
+            right[node] = child;
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    @Override
+    public T remove(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        int node = find(data);
+        if (node == NIL) {
+            throw new java.util.NoSuchElementException(
+                    "Data is not in AVL cannot be removed");
+        }
+        T removed = key(node);
+        root = remove(data, root);
+        return removed;
+    }
+
+    /**
+     * @param data
+     *            data being removed, known to be in this subtree
+     * @param node
+     *            node we're currently at
+     * @return int new root of this subtree
+     */
+    private int remove(T data, int node) {
+        int i = data.compareTo(key(node));
+        if (i < 0) {
+            int child = remove(data, left[node]);
+            left[node] = child;
+        } else if (i > 0) {
+            int child = remove(data, right[node]);
+            right[node] = child;
+        } else {
+            size--;
+            if (left[node] == NIL || right[node] == NIL) {
+                int child = left[node] == NIL ? right[node] : left[node];
+                freeNode(node);
+                return child;
+            }
+            // has two children, replace with the successor
+            int successor = right[node];
+            while (left[successor] != NIL) {
+                successor = left[successor];
+            }
+            keys[node] = keys[successor];
+            int child = removeMin(right[node]);
+            right[node] = child;
+        }
+        return balance(node);
+    }
+
+    /**
+     * @param node
+     *            node we're currently at
+     * @return int this subtree without its smallest node
+     */
+    private int removeMin(int node) {
+        if (left[node] == NIL) {
+            int child = right[node];
+            freeNode(node);
+            return child;
+        }
+        int child = removeMin(left[node]);
+        left[node] = child;
+        return balance(node);
+    }
+
+    @Override
+    public T get(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data entered is null");
+        }
+        int node = find(data);
+        if (node == NIL) {
+            throw new java.util.NoSuchElementException("Data is not in AVL");
+        }
+        return key(node);
+    }
+
+    @Override
+    public boolean contains(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        return find(data) != NIL;
+    }
+
+    /**
+     * @param data
+     *            data being found
+     * @return int index of the node holding data, NIL if it is not there
+     */
+    private int find(T data) {
+        int node = root;
+        while (node != NIL) {
+            int i = data.compareTo(key(node));
+            if (i == 0) {
+                return node;
+            }
+            node = i < 0 ? left[node] : right[node];
+        }
+        return NIL;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<T> preorder() {
+        List<T> nodes = new ArrayList<T>(size);
+        preorder(nodes, root);
+        return nodes;
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void preorder(List<T> nodes, int node) {
+        if (node != NIL) {
+            nodes.add(key(node));
+            preorder(nodes, left[node]);
+            preorder(nodes, right[node]);
+        }
+    }
+
+    @Override
+    public List<T> postorder() {
+        List<T> nodes = new ArrayList<T>(size);
+        postorder(nodes, root);
+        return nodes;
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void postorder(List<T> nodes, int node) {
+        if (node != NIL) {
+            postorder(nodes, left[node]);
+            postorder(nodes, right[node]);
+            nodes.add(key(node));
+        }
+    }
+
+    @Override
+    public List<T> inorder() {
+        List<T> nodes = new ArrayList<T>(size);
+        inorder(nodes, root);
+        return nodes;
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void inorder(List<T> nodes, int node) {
+        if (node != NIL) {
+            inorder(nodes, left[node]);
+            nodes.add(key(node));
+            inorder(nodes, right[node]);
+        }
+    }
+
+    @Override
+    public List<T> levelorder() {
+        List<T> nodes = new ArrayList<T>(size);
+        if (root == NIL) {
+            return nodes;
+        }
+        // every node goes through the queue once, so size slots are enough
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root;
+        while (head < tail) {
+            int current = queue[head++];
+            nodes.add(key(current));
+            if (left[current] != NIL) {
+                queue[tail++] = left[current];
+            }
+            if (right[current] != NIL) {
+                queue[tail++] = right[current];
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public void clear() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Copies the tree into AVLNodes. THIS METHOD IS ONLY FOR TESTING
+     * PURPOSES, it takes O(n) time and the copy does not track later changes.
+     *
+     * @return the root of a copy of the tree
+     */
+    @Override
+    public AVLNode<T> getRoot() {
+        return toNode(root);
+    }
+
+    /**
+     * @param node
+     *            node being copied
+     * @return AVLNode copy of the subtree
+     */
+    private AVLNode<T> toNode(int node) {
+        if (node == NIL) {
+            return null;
+        }
+        AVLNode<T> copy = new AVLNode<T>(key(node));
+        copy.setLeft(toNode(left[node]));
+        copy.setRight(toNode(right[node]));
+        copy.setHeight(height[node]);
+        copy.setSize((copy.getLeft() == null ? 0 : copy.getLeft().getSize())
+                + (copy.getRight() == null ? 0 : copy.getRight().getSize())
+                + 1);
+        return copy;
+    }
+
+    /**
+     * @param node
+     *            node whose height is wanted, may be NIL
+     * @return int height of the node, -1 if node is NIL
+     */
+    private int height(int node) {
+        return node == NIL ? -1 : height[node];
+    }
+
+    /**
+     * @param node
+     *            node whose height is recalculated from its children
+     */
+    private void update(int node) {
+        height[node] = (byte) (Math.max(height(left[node]),
+                height(right[node])) + 1);
+    }
+
+    /**
+     * Updates a node and rotates it if it has become unbalanced.
+     *
+     * @param node
+     *            node being balanced
+     * @return int new root of this subtree
+     */
+    private int balance(int node) {
+        update(node);
+        int balanceFactor = height(left[node]) - height(right[node]);
+        if (balanceFactor > 1) {
+            int child = left[node];
+            if (height(left[child]) < height(right[child])) {
+                left[node] = rotateWithRightChild(child);
+            }
+            node = rotateWithLeftChild(node);
+        } else if (balanceFactor < -1) {
+            int child = right[node];
+            if (height(right[child]) < height(left[child])) {
+                right[node] = rotateWithLeftChild(child);
+            }
+            node = rotateWithRightChild(node);
+        }
+        return node;
+    }
+
+    /**
+     * @param node2
+     *            node being rotated around
+     * @return int new root of this subtree
+     */
+    private int rotateWithLeftChild(int node2) {
+        int node1 = left[node2];
+        left[node2] = right[node1];
+        right[node1] = node2;
+        update(node2);
+        update(node1);
+        return node1;
+    }
+
+    /**
+     * @param node1
+     *            node being rotated around
+     * @return int new root of this subtree
+     */
+    private int rotateWithRightChild(int node1) {
+        int node2 = right[node1];
+        right[node1] = left[node2];
+        left[node2] = node1;
+        update(node1);
+        update(node2);
+        return node2;
+    }
+}
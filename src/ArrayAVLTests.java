@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests ArrayAVL by running it next to AVL, which follows the same balancing
+ * rules and so must end up the same shape.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class ArrayAVLTests {
+    private static final int TIMEOUT = 200;
+
+    @Test(timeout = TIMEOUT)
+    public void testMatchesAVL() {
+        Random random = new Random(1332);
+        ArrayAVL<Integer> arrayTree = new ArrayAVL<>(0);
+        AVL<Integer> avlTree = new AVL<>();
+        for (int i = 0; i < 5000; i++) {
+            Integer key = random.nextInt(1000);
+            if (random.nextInt(2) == 0 && avlTree.contains(key)) {
+                assertEquals(avlTree.remove(key), arrayTree.remove(key));
+            } else {
+                avlTree.add(key);
+                arrayTree.add(key);
+            }
+        }
+
+        assertEquals(avlTree.size(), arrayTree.size());
+        assertEquals(avlTree.height(), arrayTree.height());
+        assertEquals(avlTree.preorder(), arrayTree.preorder());
+        assertEquals(avlTree.inorder(), arrayTree.inorder());
+        assertEquals(avlTree.postorder(), arrayTree.postorder());
+        assertEquals(avlTree.levelorder(), arrayTree.levelorder());
+
+        AVLNode<Integer> expected = avlTree.getRoot();
+        AVLNode<Integer> actual = arrayTree.getRoot();
+        assertEquals(expected.getBalanceFactor(), actual.getBalanceFactor());
+        assertEquals(expected.getLeft().getHeight(),
+                actual.getLeft().getHeight());
+        assertEquals(expected.getSize(), actual.getSize());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testGetReturnsStoredData() {
+        Integer stored = new Integer(646);
+        ArrayAVL<Integer> arrayTree = new ArrayAVL<>(Arrays.asList(526,
+                386, stored, 856));
+
+        assertSame(stored, arrayTree.get(new Integer(646)));
+        assertSame(stored, arrayTree.remove(new Integer(646)));
+        assertFalse(arrayTree.contains(646));
+
+        arrayTree.clear();
+        assertEquals(0, arrayTree.size());
+        assertEquals(-1, arrayTree.height());
+        assertNull(arrayTree.getRoot());
+    }
+
+    @Test(timeout = TIMEOUT, expected = NoSuchElementException.class)
+    public void testRemoveMissing() {
+        ArrayAVL<Integer> arrayTree = new ArrayAVL<>();
+        arrayTree.add(1);
+        arrayTree.remove(2);
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testAddNull() {
+        new ArrayAVL<Integer>().add(null);
+    }
+}
@@ -0,0 +1,507 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe AVL tree whose lookups are optimistic with a read-lock
+ * fallback.
+ *
+ * get and contains walk the tree under an optimistic stamp from a
+ * StampedLock and only trust the answer if no writer ran during the walk.
+ * Child links are volatile and keys are final, so a reader racing a rotation
+ * sees every link it follows whole. If the stamp was invalidated the walk is
+ * retried, and after a few failed attempts the reader falls back to the read
+ * lock so it cannot starve. A walk is also cut off after more steps than any
+ * real path could take, in case a racing rotation sent it around a loop.
+ *
+ * Writers take the write lock, so they are serialized with each other. The
+ * balancing rules are the same as AVL's, so the same operations give the
+ * same shape. Traversals take the read lock and see a consistent tree.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class ConcurrentAVL<T extends Comparable<? super T>> implements
+        AVLInterface<T> {
+
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    // longer than any root to leaf path in a tree that fits in memory
+    private static final int MAX_PATH = 128;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Node<T> root;
+    private volatile int size;
+
+    /**
+     * Node of the tree. The key never changes once the node is published.
+     */
+    private static final class Node<T> {
+        private final T key;
+        private volatile Node<T> left;
+        private volatile Node<T> right;
+        // only read and written while holding the write lock
+        private int height;
+
+        /**
+         * @param key
+         *            key stored in this node
+         */
+        Node(T key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public ConcurrentAVL() {
+    }
+
+    /**
+     * Initializes the tree with the data in the Collection, added in the
+     * order it is in the Collection.
+     *
+     * @param data
+     *            the data to add to the tree
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null
+     */
+    public ConcurrentAVL(Collection<T> data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data entered is null");
+        }
+        for (T item : data) {
+            add(item);
+        }
+    }
+
+    @Override
+    public void add(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data given is null");
+        }
+        long stamp = lock.writeLock();
+        try {
+            root = add(data, root);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param data
+     *            data being added
+     * @param node
+     *            node we're currently at
+     * @return Node new root of this subtree
+     */
+    private Node<T> add(T data, Node<T> node) {
+        if (node == null) {
+            size++;
+            return new Node<T>(data);
+        }
+        int i = data.compareTo(node.key);
+        if (i < 0) {
+            Node<T> child = add(data, node.left);
+            if (child != node.left) {
+                node.left = child;
+            }
+        } else if (i > 0) {
+            Node<T> child = add(data, node.right);
+            if (child != node.right) {
+                node.right = child;
+            }
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    @Override
+    public T remove(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        long stamp = lock.writeLock();
+        try {
+            Node<T> node = find(data, root);
+            if (node == null) {
+                throw new java.util.NoSuchElementException(
+                        "Data is not in AVL cannot be removed");
+            }
+            root = remove(data, root);
+            return node.key;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param data
+     *            data being removed, known to be in this subtree
+     * @param node
+     *            node we're currently at
+     * @return Node new root of this subtree
+     */
+    private Node<T> remove(T data, Node<T> node) {
+        int i = data.compareTo(node.key);
+        if (i < 0) {
+            Node<T> child = remove(data, node.left);
+            if (child != node.left) {
+                node.left = child;
+            }
+        } else if (i > 0) {
+            Node<T> child = remove(data, node.right);
+            if (child != node.right) {
+                node.right = child;
+            }
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            } else if (node.right == null) {
+                return node.left;
+            }
+            // keys are final, so the successor node itself takes this place
+            Node<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    /**
+     * @param node
+     *            node we're currently at
+     * @return Node this subtree without its smallest node
+     */
+    private Node<T> removeMin(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        Node<T> child = removeMin(node.left);
+        if (child != node.left) {
+            node.left = child;
+        }
+        return balance(node);
+    }
+
+    @Override
+    public T get(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data entered is null");
+        }
+        Node<T> node = lookup(data);
+        if (node == null) {
+            throw new java.util.NoSuchElementException("Data is not in AVL");
+        }
+        return node.key;
+    }
+
+    @Override
+    public boolean contains(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        return lookup(data) != null;
+    }
+
+    /**
+     * Finds data without locking if it can, falling back to the read lock
+     *
+     * @param data
+     *            data being found
+     * @return Node holding data, or null if it is not in the tree
+     */
+    private Node<T> lookup(T data) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                // a writer holds the lock, give it a moment
+                Thread.yield();
+                continue;
+            }
+            Node<T> node = root;
+            int steps = 0;
+            while (node != null && steps++ < MAX_PATH) {
+                int i = data.compareTo(node.key);
+                if (i == 0) {
+                    break;
+                }
+                node = i < 0 ? node.left : node.right;
+            }
+            if (steps <= MAX_PATH && lock.validate(stamp)) {
+                return node;
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            return find(data, root);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Finds data while holding a lock
+     *
+     * @param data
+     *            data being found
+     * @param node
+     *            root of the subtree to search
+     * @return Node holding data, or null if it is not in the subtree
+     */
+    private Node<T> find(T data, Node<T> node) {
+        while (node != null) {
+            int i = data.compareTo(node.key);
+            if (i == 0) {
+                return node;
+            }
+            node = i < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<T> preorder() {
+        long stamp = lock.readLock();
+        try {
+            List<T> nodes = new ArrayList<T>(size);
+            preorder(nodes, root);
+            return nodes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void preorder(List<T> nodes, Node<T> node) {
+        if (node != null) {
+            nodes.add(node.key);
+            preorder(nodes, node.left);
+            preorder(nodes, node.right);
+        }
+    }
+
+    @Override
+    public List<T> postorder() {
+        long stamp = lock.readLock();
+        try {
+            List<T> nodes = new ArrayList<T>(size);
+            postorder(nodes, root);
+            return nodes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void postorder(List<T> nodes, Node<T> node) {
+        if (node != null) {
+            postorder(nodes, node.left);
+            postorder(nodes, node.right);
+            nodes.add(node.key);
+        }
+    }
+
+    @Override
+    public List<T> inorder() {
+        long stamp = lock.readLock();
+        try {
+            List<T> nodes = new ArrayList<T>(size);
+            inorder(nodes, root);
+            return nodes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void inorder(List<T> nodes, Node<T> node) {
+        if (node != null) {
+            inorder(nodes, node.left);
+            nodes.add(node.key);
+            inorder(nodes, node.right);
+        }
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<T> levelorder() {
+        long stamp = lock.readLock();
+        try {
+            List<T> nodes = new ArrayList<T>(size);
+            if (root == null) {
+                return nodes;
+            }
+            // every node goes through the queue once
+            Node<T>[] queue = (Node<T>[]) new Node[size];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = root;
+            while (head < tail) {
+                Node<T> current = queue[head++];
+                nodes.add(current.key);
+                if (current.left != null) {
+                    queue[tail++] = current.left;
+                }
+                if (current.right != null) {
+                    queue[tail++] = current.right;
+                }
+            }
+            return nodes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            root = null;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int height() {
+        long stamp = lock.readLock();
+        try {
+            return height(root);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies the tree into AVLNodes. THIS METHOD IS ONLY FOR TESTING
+     * PURPOSES, it takes O(n) time and the copy does not track later changes.
+     *
+     * @return the root of a copy of the tree
+     */
+    @Override
+    public AVLNode<T> getRoot() {
+        long stamp = lock.readLock();
+        try {
+            return toNode(root);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param node
+     *            node being copied
+     * @return AVLNode copy of the subtree
+     */
+    private AVLNode<T> toNode(Node<T> node) {
+        if (node == null) {
+            return null;
+        }
+        AVLNode<T> copy = new AVLNode<T>(node.key);
+        copy.setLeft(toNode(node.left));
+        copy.setRight(toNode(node.right));
+        copy.setHeight(node.height);
+        copy.setSize((copy.getLeft() == null ? 0 : copy.getLeft().getSize())
+                + (copy.getRight() == null ? 0 : copy.getRight().getSize())
+                + 1);
+        return copy;
+    }
+
+    /**
+     * @param node
+     *            node whose height is wanted, may be null
+     * @return int height of the node, -1 if node is null
+     */
+    private static int height(Node<?> node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * @param node
+     *            node whose height is recalculated from its children
+     */
+    private static void update(Node<?> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+    }
+
+    /**
+     * Updates a node and rotates it if it has become unbalanced.
+     *
+     * @param node
+     *            node being balanced
+     * @return Node new root of this subtree
+     */
+    private static <T> Node<T> balance(Node<T> node) {
+        update(node);
+        int balanceFactor = height(node.left) - height(node.right);
+        if (balanceFactor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateWithRightChild(node.left);
+            }
+            node = rotateWithLeftChild(node);
+        } else if (balanceFactor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateWithLeftChild(node.right);
+            }
+            node = rotateWithRightChild(node);
+        }
+        return node;
+    }
+
+    /**
+     * @param node2
+     *            node being rotated around
+     * @return Node new root of this subtree
+     */
+    private static <T> Node<T> rotateWithLeftChild(Node<T> node2) {
+        Node<T> node1 = node2.left;
+        node2.left = node1.right;
+        node1.right = node2;
+        update(node2);
+        update(node1);
+        return node1;
+    }
+
+    /**
+     * @param node1
+     *            node being rotated around
+     * @return Node new root of this subtree
+     */
+    private static <T> Node<T> rotateWithRightChild(Node<T> node1) {
+        Node<T> node2 = node1.right;
+        node1.right = node2.left;
+        node2.left = node1;
+        update(node1);
+        update(node2);
+        return node2;
+    }
+}
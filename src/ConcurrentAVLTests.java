@@ -0,0 +1,89 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests ConcurrentAVL on its own and with readers racing a writer.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class ConcurrentAVLTests {
+    private static final int TIMEOUT = 200;
+
+    @Test(timeout = TIMEOUT)
+    public void testMatchesAVL() {
+        Random random = new Random(1332);
+        ConcurrentAVL<Integer> concurrentTree = new ConcurrentAVL<>();
+        AVL<Integer> avlTree = new AVL<>();
+        for (int i = 0; i < 5000; i++) {
+            Integer key = random.nextInt(1000);
+            if (random.nextInt(2) == 0 && avlTree.contains(key)) {
+                assertEquals(avlTree.remove(key), concurrentTree.remove(key));
+            } else {
+                avlTree.add(key);
+                concurrentTree.add(key);
+            }
+        }
+
+        assertEquals(avlTree.size(), concurrentTree.size());
+        assertEquals(avlTree.height(), concurrentTree.height());
+        assertEquals(avlTree.preorder(), concurrentTree.preorder());
+        assertEquals(avlTree.inorder(), concurrentTree.inorder());
+        assertEquals(avlTree.postorder(), concurrentTree.postorder());
+        assertEquals(avlTree.levelorder(), concurrentTree.levelorder());
+        assertEquals(avlTree.getRoot().getBalanceFactor(),
+                concurrentTree.getRoot().getBalanceFactor());
+    }
+
+    @Test(timeout = TIMEOUT * 10)
+    public void testReadersNeverMissStableKeys() throws InterruptedException {
+        // even keys stay put while a writer churns the odd keys around
+        // them, so readers see plenty of rotations but must always find
+        // every even key
+        int n = 20000;
+        ConcurrentAVL<Integer> tree = new ConcurrentAVL<>();
+        for (int i = 0; i < n; i += 2) {
+            tree.add(i);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            int seed = r;
+            readers[r] = new Thread(() -> {
+                Random random = new Random(seed);
+                while (!done.get()) {
+                    int key = random.nextInt(n / 2) * 2;
+                    if (!tree.contains(key)) {
+                        misses.incrementAndGet();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 1; i < n; i += 2) {
+                tree.add(i);
+            }
+            for (int i = 1; i < n; i += 2) {
+                tree.remove(i);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(0, misses.get());
+        assertEquals(n / 2, tree.size());
+        assertTrue(tree.contains(0));
+        assertFalse(tree.contains(1));
+    }
+}
@@ -0,0 +1,408 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * An AVL tree whose contents survive a crash. Every add and remove is
+ * appended to a log before it is applied, and opening the tree again loads
+ * the last snapshot and replays the log on top of it.
+ *
+ * A log record is a one byte operation, the length of the key, the key
+ * written with the codec, and a CRC32 of the three. Records are buffered
+ * and the log is only forced to disk once every syncEvery records, so a
+ * crash can lose up to syncEvery - 1 of the most recent writes in exchange
+ * for fewer fsyncs. syncEvery of 1 makes every write durable before it
+ * returns, and sync() or close() force whatever is buffered.
+ *
+ * A crash in the middle of a write leaves a torn record at the end of the
+ * log. Replay stops at the first record that is cut short or fails its CRC
+ * and cuts the log off there.
+ *
+ * Once the log grows past a threshold it is compacted: the tree is written
+ * to a new snapshot, which replaces the old one with an atomic rename, and
+ * the log is emptied. If a crash comes between the two, the old log gets
+ * replayed over the new snapshot. Since replaying an add or remove gives the
+ * same result however many times it is done, the tree still comes back
+ * right.
+ *
+ * Like AVL, this class is not thread-safe.
+ *
+ * @param <T>
+ *            the type of data in the tree
+ * @author jredston3
+ * @version 1.0
+ */
+public class DurableAVL<T extends Comparable<? super T>> implements Closeable {
+
+    private static final int DEFAULT_SYNC_EVERY = 1;
+    private static final long DEFAULT_COMPACT_THRESHOLD = 64L << 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    // operation, key length and CRC
+    private static final int RECORD_OVERHEAD = 1 + Integer.BYTES * 2;
+
+    private final Path snapshot;
+    private final Path log;
+    private final AVLKeyCodec<T> codec;
+    private final int syncEvery;
+    private final long compactThreshold;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private AVL<T> tree;
+    private FileChannel channel;
+    // bytes in the log, counting ones still in buffer
+    private long logSize;
+    // records appended since the log was last forced
+    private int unsynced;
+
+    /**
+     * Opens the tree stored in directory, or creates an empty one there,
+     * forcing every write to disk before it returns and compacting the log
+     * past 64MB.
+     *
+     * @param directory
+     *            directory holding the snapshot and log
+     * @param codec
+     *            writes and reads the keys
+     * @throws IllegalArgumentException
+     *             if directory or codec is null
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    public DurableAVL(Path directory, AVLKeyCodec<T> codec)
+            throws IOException {
+        this(directory, codec, DEFAULT_SYNC_EVERY, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Opens the tree stored in directory, or creates an empty one there.
+     *
+     * @param directory
+     *            directory holding the snapshot and log
+     * @param codec
+     *            writes and reads the keys
+     * @param syncEvery
+     *            number of writes to group into each fsync
+     * @param compactThreshold
+     *            log size in bytes that triggers compaction
+     * @throws IllegalArgumentException
+     *             if directory or codec is null, or syncEvery or
+     *             compactThreshold is not positive
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    public DurableAVL(Path directory, AVLKeyCodec<T> codec, int syncEvery,
+            long compactThreshold) throws IOException {
+        if (directory == null || codec == null) {
+            throw new IllegalArgumentException("Argument given is null");
+        }
+        if (syncEvery < 1 || compactThreshold < 1) {
+            throw new IllegalArgumentException(
+                    "syncEvery and compactThreshold must be positive");
+        }
+        this.snapshot = directory.resolve("snapshot");
+        this.log = directory.resolve("log");
+        this.codec = codec;
+        this.syncEvery = syncEvery;
+        this.compactThreshold = compactThreshold;
+        Files.createDirectories(directory);
+        tree = Files.exists(snapshot) ? AVL.readSnapshot(snapshot, codec)
+                : new AVL<T>();
+        channel = FileChannel.open(log, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logSize = replay();
+        channel.truncate(logSize);
+        channel.position(logSize);
+    }
+
+    /**
+     * Applies the log to the tree, stopping at the first bad record
+     *
+     * @return long length of the good part of the log
+     * @throws IOException
+     *             if the log cannot be read
+     */
+    private long replay() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0)), BUFFER_SIZE));
+        long good = 0;
+        try {
+            while (true) {
+                byte operation = in.readByte();
+                int length = in.readInt();
+                if ((operation != ADD && operation != REMOVE) || length < 0
+                        || good + RECORD_OVERHEAD + length > channel.size()) {
+                    return good;
+                }
+                byte[] record = new byte[1 + Integer.BYTES + length];
+                ByteBuffer.wrap(record).put(operation).putInt(length);
+                in.readFully(record, 1 + Integer.BYTES, length);
+                crc.reset();
+                crc.update(record, 0, record.length);
+                if (in.readInt() != (int) crc.getValue()) {
+                    return good;
+                }
+                T key;
+                try {
+                    key = codec.decode(ByteBuffer.wrap(record,
+                            1 + Integer.BYTES, length));
+                } catch (IllegalArgumentException e) {
+                    return good;
+                }
+                if (operation == ADD) {
+                    tree.add(key);
+                } else if (tree.contains(key)) {
+                    tree.remove(key);
+                }
+                good += record.length + Integer.BYTES;
+            }
+        } catch (EOFException e) {
+            return good;
+        }
+    }
+
+    /**
+     * Adds data to the tree, logging it first. Data already in the tree is
+     * not logged.
+     *
+     * @param data
+     *            the data to be added
+     * @throws IllegalArgumentException
+     *             if data is null
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public void add(T data) throws IOException {
+        if (data == null) {
+            throw new IllegalArgumentException("data given is null");
+        }
+        if (!tree.contains(data)) {
+            append(ADD, data);
+            tree.add(data);
+            afterWrite();
+        }
+    }
+
+    /**
+     * Removes data from the tree, logging it first.
+     *
+     * @param data
+     *            data to remove
+     * @return T the data that was removed
+     * @throws IllegalArgumentException
+     *             if data is null
+     * @throws java.util.NoSuchElementException
+     *             if data is not in the tree
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public T remove(T data) throws IOException {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        if (!tree.contains(data)) {
+            throw new NoSuchElementException(
+                    "Data is not in AVL cannot be removed");
+        }
+        append(REMOVE, data);
+        T removed = tree.remove(data);
+        afterWrite();
+        return removed;
+    }
+
+    /**
+     * Puts a record in the buffer, writing the buffer out first if it is
+     * too full
+     *
+     * @param operation
+     *            ADD or REMOVE
+     * @param data
+     *            the key
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    private void append(byte operation, T data) throws IOException {
+        int length = codec.encodedLength(data);
+        int recordLength = RECORD_OVERHEAD + length;
+        if (buffer.remaining() < recordLength) {
+            drain(buffer);
+        }
+        // a key too big for the buffer gets one of its own
+        ByteBuffer out = recordLength <= buffer.capacity() ? buffer
+                : ByteBuffer.allocate(recordLength);
+        int start = out.position();
+        out.put(operation);
+        out.putInt(length);
+        codec.encode(data, out);
+        crc.reset();
+        crc.update(out.array(), start, out.position() - start);
+        out.putInt((int) crc.getValue());
+        if (out != buffer) {
+            drain(out);
+        }
+        logSize += recordLength;
+        unsynced++;
+    }
+
+    /**
+     * Forces the log once enough writes have built up, and compacts it once
+     * it is big enough
+     *
+     * @throws IOException
+     *             if the files cannot be written
+     */
+    private void afterWrite() throws IOException {
+        if (unsynced >= syncEvery) {
+            sync();
+        }
+        if (logSize >= compactThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes everything in a buffer to the log and empties it
+     *
+     * @param out
+     *            bytes to write
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    private void drain(ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Writes out every buffered record and forces the log to disk, so all
+     * writes so far survive a crash.
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public void sync() throws IOException {
+        drain(buffer);
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Writes the tree to a new snapshot and empties the log.
+     *
+     * @throws IOException
+     *             if the files cannot be written
+     */
+    public void compact() throws IOException {
+        sync();
+        Path next = snapshot.resolveSibling("snapshot.tmp");
+        tree.writeSnapshot(next, codec);
+        Files.move(next, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        channel.truncate(0);
+        channel.force(false);
+        logSize = 0;
+    }
+
+    /**
+     * Forces the directory so the rename of the snapshot survives a crash.
+     * Not every platform allows opening a directory, and where it can't be
+     * done there is nothing more to do.
+     */
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(snapshot.getParent(),
+                StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // the rename is still atomic, just not yet forced
+        }
+    }
+
+    /**
+     * Returns the data in the tree equal to the parameter.
+     *
+     * @param data
+     *            data to get
+     * @return T the data stored in the tree
+     * @throws IllegalArgumentException
+     *             if data is null
+     * @throws java.util.NoSuchElementException
+     *             if data is not in the tree
+     */
+    public T get(T data) {
+        return tree.get(data);
+    }
+
+    /**
+     * Returns whether or not the parameter is contained within the tree.
+     *
+     * @param data
+     *            data to find
+     * @return boolean whether data is in the tree
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public boolean contains(T data) {
+        return tree.contains(data);
+    }
+
+    /**
+     * Get the number of elements in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Get the inorder traversal of the tree.
+     *
+     * @return an inorder traversal of the tree, or an empty list
+     */
+    public List<T> inorder() {
+        return tree.inorder();
+    }
+
+    /**
+     * Gets the size of the log, counting records not yet written out.
+     *
+     * @return long bytes in the log
+     */
+    public long logSize() {
+        return logSize;
+    }
+
+    /**
+     * Forces every write to disk and closes the log.
+     *
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                sync();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that DurableAVL comes back the way it was left, including after a
+ * crash.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class DurableAVLTests {
+    private static final int TIMEOUT = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = folder.newFolder().toPath();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testReopen() throws IOException {
+        List<Integer> expected = new ArrayList<>();
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER, 64, Long.MAX_VALUE)) {
+            for (int i = 0; i < 100; i++) {
+                tree.add(i);
+            }
+            for (int i = 0; i < 100; i += 3) {
+                assertEquals((Integer) i, tree.remove(i));
+            }
+            tree.add(5);
+            expected.addAll(tree.inorder());
+        }
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            assertEquals(expected, tree.inorder());
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testCrashLosesOnlyUnsyncedWrites() throws IOException {
+        // never closed, as if the process died
+        DurableAVL<String> crashed = new DurableAVL<>(directory,
+                AVLKeyCodec.STRING, 4, Long.MAX_VALUE);
+        for (int i = 0; i < 10; i++) {
+            crashed.add("key" + i);
+        }
+
+        try (DurableAVL<String> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.STRING)) {
+            // two groups of four were forced, the last two were buffered
+            assertEquals(8, tree.size());
+            assertTrue(tree.contains("key7"));
+            assertFalse(tree.contains("key8"));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testTornRecord() throws IOException {
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            tree.add(1);
+            tree.add(2);
+        }
+        Path log = directory.resolve("log");
+        long goodSize = Files.size(log);
+        // half of a third record
+        Files.write(log, new byte[] {1, 0, 0, 0, 4, 0, 0},
+                StandardOpenOption.APPEND);
+
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            assertEquals(2, tree.size());
+            assertEquals(goodSize, tree.logSize());
+            tree.add(3);
+        }
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            assertEquals(3, tree.size());
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testBadChecksum() throws IOException {
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            tree.add(1);
+            tree.add(2);
+        }
+        Path log = directory.resolve("log");
+        byte[] bytes = Files.readAllBytes(log);
+        // flip a bit in the second key
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(log, bytes);
+
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            assertEquals(1, tree.size());
+            assertTrue(tree.contains(1));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testCompaction() throws IOException {
+        try (DurableAVL<Long> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.LONG, 16, 1000)) {
+            for (long i = 0; i < 500; i++) {
+                tree.add(i);
+                assertTrue(tree.logSize() < 1000);
+            }
+            for (long i = 0; i < 500; i += 2) {
+                tree.remove(i);
+            }
+        }
+        assertTrue(Files.exists(directory.resolve("snapshot")));
+        assertTrue(Files.size(directory.resolve("log")) < 1000);
+
+        try (DurableAVL<Long> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.LONG)) {
+            assertEquals(250, tree.size());
+            assertTrue(tree.contains(499L));
+            assertFalse(tree.contains(498L));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testReplayOverNewerSnapshot() throws IOException {
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            tree.add(1);
+            tree.add(2);
+            tree.remove(1);
+        }
+        // a crash after the snapshot was replaced but before the log was
+        // emptied leaves the old log beside the new snapshot
+        byte[] log = Files.readAllBytes(directory.resolve("log"));
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            tree.compact();
+        }
+        Files.write(directory.resolve("log"), log);
+
+        try (DurableAVL<Integer> tree = new DurableAVL<>(directory,
+                AVLKeyCodec.INTEGER)) {
+            assertEquals(1, tree.size());
+            assertTrue(tree.contains(2));
+        }
+    }
+}
@@ -0,0 +1,375 @@
+import java.util.NoSuchElementException;
+
+/**
+ * An AVL tree of primitive int keys. It has the same operations and balancing
+ * rules as AVL, but keys are stored unboxed in the nodes and compared with
+ * {@code <}, so no operation allocates an Integer.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class IntAVL {
+
+    private Node root;
+    private int size;
+
+    /**
+     * Node of the tree, holding its key unboxed.
+     */
+    private static final class Node {
+        private final int key;
+        private Node left;
+        private Node right;
+        private int height;
+
+        /**
+         * @param key
+         *            key stored in this node
+         */
+        Node(int key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Add the key as a leaf in the tree. If the key already exists in the
+     * tree, do nothing.
+     *
+     * @param key
+     *            the key to be added
+     */
+    public void add(int key) {
+        root = add(key, root);
+    }
+
+    /**
+     * @param key
+     *            key being added
+     * @param node
+     *            node we're currently at
+     * @return Node new root of this subtree
+     */
+    private Node add(int key, Node node) {
+        if (node == null) {
+            size++;
+            return new Node(key);
+        }
+        if (key < node.key) {
+            node.left = add(key, node.left);
+        } else if (key > node.key) {
+            node.right = add(key, node.right);
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    /**
+     * Removes the key from the tree, replacing a node with two children by
+     * its successor.
+     *
+     * @param key
+     *            key to remove from the tree
+     * @return int the key removed
+     * @throws java.util.NoSuchElementException
+     *             if the key is not in the tree
+     */
+    public int remove(int key) {
+        root = remove(key, root);
+        return key;
+    }
+
+    /**
+     * @param key
+     *            key being removed
+     * @param node
+     *            node we're currently at
+     * @return Node new root of this subtree
+     */
+    private Node remove(int key, Node node) {
+        if (node == null) {
+            throw new NoSuchElementException(
+                    "Key is not in IntAVL cannot be removed");
+        }
+        if (key < node.key) {
+            node.left = remove(key, node.left);
+        } else if (key > node.key) {
+            node.right = remove(key, node.right);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            } else if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    /**
+     * @param node
+     *            node we're currently at
+     * @return Node this subtree without its smallest node
+     */
+    private Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    /**
+     * Returns the key in the tree equal to the parameter.
+     *
+     * @param key
+     *            key to get
+     * @return int the key in the tree
+     * @throws java.util.NoSuchElementException
+     *             if the key is not found
+     */
+    public int get(int key) {
+        if (!contains(key)) {
+            throw new NoSuchElementException("Key is not in IntAVL");
+        }
+        return key;
+    }
+
+    /**
+     * Returns whether or not the key is contained within the tree.
+     *
+     * @param key
+     *            key to find
+     * @return boolean whether the key is in the tree
+     */
+    public boolean contains(int key) {
+        Node node = root;
+        while (node != null) {
+            if (key < node.key) {
+                node = node.left;
+            } else if (key > node.key) {
+                node = node.right;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of keys in the tree.
+     *
+     * @return the number of keys in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clear the tree.
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Return the height of the root of the tree.
+     *
+     * @return the height of the root of the tree, -1 if the tree is empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Get the preorder traversal of the tree.
+     *
+     * @return a preorder traversal of the tree, or an empty array
+     */
+    public int[] preorder() {
+        int[] keys = new int[size];
+        preorder(root, keys, 0);
+        return keys;
+    }
+
+    /**
+     * @param node
+     *            node we're currently at
+     * @param keys
+     *            array being filled
+     * @param index
+     *            next index to fill
+     * @return int next index to fill after this subtree
+     */
+    private int preorder(Node node, int[] keys, int index) {
+        if (node != null) {
+            keys[index++] = node.key;
+            index = preorder(node.left, keys, index);
+            index = preorder(node.right, keys, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get the inorder traversal of the tree.
+     *
+     * @return an inorder traversal of the tree, or an empty array
+     */
+    public int[] inorder() {
+        int[] keys = new int[size];
+        inorder(root, keys, 0);
+        return keys;
+    }
+
+    /**
+     * @param node
+     *            node we're currently at
+     * @param keys
+     *            array being filled
+     * @param index
+     *            next index to fill
+     * @return int next index to fill after this subtree
+     */
+    private int inorder(Node node, int[] keys, int index) {
+        if (node != null) {
+            index = inorder(node.left, keys, index);
+            keys[index++] = node.key;
+            index = inorder(node.right, keys, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get the postorder traversal of the tree.
+     *
+     * @return a postorder traversal of the tree, or an empty array
+     */
+    public int[] postorder() {
+        int[] keys = new int[size];
+        postorder(root, keys, 0);
+        return keys;
+    }
+
+    /**
+     * @param node
+     *            node we're currently at
+     * @param keys
+     *            array being filled
+     * @param index
+     *            next index to fill
+     * @return int next index to fill after this subtree
+     */
+    private int postorder(Node node, int[] keys, int index) {
+        if (node != null) {
+            index = postorder(node.left, keys, index);
+            index = postorder(node.right, keys, index);
+            keys[index++] = node.key;
+        }
+        return index;
+    }
+
+    /**
+     * Get the level order traversal of the tree.
+     *
+     * @return a level order traversal of the tree, or an empty array
+     */
+    public int[] levelorder() {
+        int[] keys = new int[size];
+        if (root == null) {
+            return keys;
+        }
+        // every node goes through the queue once, so size slots are enough
+        Node[] queue = new Node[size];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root;
+        while (head < tail) {
+            Node current = queue[head];
+            keys[head++] = current.key;
+            if (current.left != null) {
+                queue[tail++] = current.left;
+            }
+            if (current.right != null) {
+                queue[tail++] = current.right;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @param node
+     *            node whose height is wanted, may be null
+     * @return int height of the node, -1 if node is null
+     */
+    private static int height(Node node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * @param node
+     *            node whose height is recalculated from its children
+     */
+    private static void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+    }
+
+    /**
+     * Updates a node and rotates it if it has become unbalanced.
+     *
+     * @param node
+     *            node being balanced
+     * @return Node new root of this subtree
+     */
+    private static Node balance(Node node) {
+        update(node);
+        int balanceFactor = height(node.left) - height(node.right);
+        if (balanceFactor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateWithRightChild(node.left);
+            }
+            node = rotateWithLeftChild(node);
+        } else if (balanceFactor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateWithLeftChild(node.right);
+            }
+            node = rotateWithRightChild(node);
+        }
+        return node;
+    }
+
+    /**
+     * @param node2
+     *            node being rotated around
+     * @return Node new root of this subtree
+     */
+    private static Node rotateWithLeftChild(Node node2) {
+        Node node1 = node2.left;
+        node2.left = node1.right;
+        node1.right = node2;
+        update(node2);
+        update(node1);
+        return node1;
+    }
+
+    /**
+     * @param node1
+     *            node being rotated around
+     * @return Node new root of this subtree
+     */
+    private static Node rotateWithRightChild(Node node1) {
+        Node node2 = node1.right;
+        node1.right = node2.left;
+        node2.left = node1;
+        update(node1);
+        update(node2);
+        return node2;
+    }
+}
@@ -0,0 +1,112 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests IntAVL and LongAVL by running them next to an AVL of boxed keys, which
+ * follows the same balancing rules and so must end up the same shape.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class IntAVLTests {
+    private static final int TIMEOUT = 200;
+
+    @Test(timeout = TIMEOUT)
+    public void testIntMatchesAVL() {
+        Random random = new Random(1332);
+        IntAVL primitive = new IntAVL();
+        AVL<Integer> boxed = new AVL<>();
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0 && boxed.contains(key)) {
+                assertEquals((int) boxed.remove(key), primitive.remove(key));
+            } else {
+                boxed.add(key);
+                primitive.add(key);
+            }
+            assertEquals(boxed.contains(key), primitive.contains(key));
+        }
+
+        assertEquals(boxed.size(), primitive.size());
+        assertEquals(boxed.height(), primitive.height());
+        assertArrayEquals(toInts(boxed.preorder()), primitive.preorder());
+        assertArrayEquals(toInts(boxed.inorder()), primitive.inorder());
+        assertArrayEquals(toInts(boxed.postorder()), primitive.postorder());
+        assertArrayEquals(toInts(boxed.levelorder()), primitive.levelorder());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testLongMatchesAVL() {
+        Random random = new Random(1332);
+        LongAVL primitive = new LongAVL();
+        AVL<Long> boxed = new AVL<>();
+        for (int i = 0; i < 5000; i++) {
+            long key = random.nextInt(2000) + (long) Integer.MAX_VALUE;
+            if (random.nextInt(3) == 0 && boxed.contains(key)) {
+                assertEquals((long) boxed.remove(key), primitive.remove(key));
+            } else {
+                boxed.add(key);
+                primitive.add(key);
+            }
+        }
+
+        assertEquals(boxed.size(), primitive.size());
+        assertEquals(boxed.height(), primitive.height());
+        long[] preorder = primitive.preorder();
+        List<Long> expected = boxed.preorder();
+        for (int i = 0; i < preorder.length; i++) {
+            assertEquals((long) expected.get(i), preorder[i]);
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testEmptyAndClear() {
+        IntAVL primitive = new IntAVL();
+        assertEquals(-1, primitive.height());
+        assertEquals(0, primitive.levelorder().length);
+        assertFalse(primitive.contains(0));
+
+        primitive.add(3);
+        primitive.add(3);
+        assertEquals(1, primitive.size());
+        assertTrue(primitive.contains(3));
+        assertEquals(3, primitive.get(3));
+
+        primitive.clear();
+        assertEquals(0, primitive.size());
+        assertFalse(primitive.contains(3));
+    }
+
+    @Test(timeout = TIMEOUT, expected = NoSuchElementException.class)
+    public void testRemoveMissing() {
+        LongAVL primitive = new LongAVL();
+        primitive.add(1L);
+        primitive.remove(2L);
+    }
+
+    @Test(timeout = TIMEOUT, expected = NoSuchElementException.class)
+    public void testGetMissing() {
+        new IntAVL().get(0);
+    }
+
+    /**
+     * @param list
+     *            boxed keys
+     * @return int[] the same keys unboxed
+     */
+    private int[] toInts(List<Integer> list) {
+        int[] ints = new int[list.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = list.get(i);
+        }
+        return ints;
+    }
+}
@@ -0,0 +1,464 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable AVL tree. add and remove leave this tree alone and return a
+ * new version that copies only the O(log n) nodes on the path they changed
+ * and shares every other node with this one. Each version is its own
+ * snapshot, so keeping a point in time view while writes continue is just a
+ * matter of holding on to a reference, and any number of threads can read
+ * any version without locking.
+ *
+ * The balancing rules are the same as AVL's, so the same operations give the
+ * same shape.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public final class PersistentAVL<T extends Comparable<? super T>> implements
+        Iterable<T> {
+
+    private static final PersistentAVL<?> EMPTY = new PersistentAVL<>(null);
+
+    private final Node<T> root;
+
+    /**
+     * Node of the tree, never changed once built.
+     */
+    private static final class Node<T> {
+        private final T key;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int height;
+        private final int size;
+
+        /**
+         * @param key
+         *            key stored in this node
+         * @param left
+         *            left subtree
+         * @param right
+         *            right subtree
+         */
+        Node(T key, Node<T> left, Node<T> right) {
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * @param root
+     *            root of this version
+     */
+    private PersistentAVL(Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the empty tree.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     * @return PersistentAVL with no data
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Comparable<? super T>> PersistentAVL<T> empty() {
+        return (PersistentAVL<T>) EMPTY;
+    }
+
+    /**
+     * Builds a tree holding the data in the Collection, added in the order
+     * it is in the Collection.
+     *
+     * @param <T>
+     *            the type of data in the tree
+     * @param data
+     *            the data to add to the tree
+     * @return PersistentAVL holding data
+     * @throws IllegalArgumentException
+     *             if data or any element in data is null
+     */
+    public static <T extends Comparable<? super T>> PersistentAVL<T> of(
+            Collection<T> data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data entered is null");
+        }
+        PersistentAVL<T> tree = empty();
+        for (T item : data) {
+            tree = tree.add(item);
+        }
+        return tree;
+    }
+
+    /**
+     * Returns a version of this tree with data added. If data is already in
+     * the tree, this tree is returned.
+     *
+     * @param data
+     *            the data to be added
+     * @return PersistentAVL this tree with data added
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public PersistentAVL<T> add(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data given is null");
+        }
+        Node<T> newRoot = add(data, root);
+        return newRoot == root ? this : new PersistentAVL<T>(newRoot);
+    }
+
+    /**
+     * @param data
+     *            data being added
+     * @param node
+     *            node we're currently at
+     * @return Node new root of this subtree, node itself if nothing changed
+     */
+    private Node<T> add(T data, Node<T> node) {
+        if (node == null) {
+            return new Node<T>(data, null, null);
+        }
+        int i = data.compareTo(node.key);
+        if (i < 0) {
+            Node<T> left = add(data, node.left);
+            return left == node.left ? node : balance(node.key, left,
+                    node.right);
+        } else if (i > 0) {
+            Node<T> right = add(data, node.right);
+            return right == node.right ? node : balance(node.key, node.left,
+                    right);
+        }
+        return node;
+    }
+
+    /**
+     * Returns a version of this tree with data removed, replacing a node with
+     * two children by its successor.
+     *
+     * @param data
+     *            data to remove
+     * @return PersistentAVL this tree with data removed
+     * @throws IllegalArgumentException
+     *             if data is null
+     * @throws java.util.NoSuchElementException
+     *             if data is not in the tree
+     */
+    public PersistentAVL<T> remove(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        return new PersistentAVL<T>(remove(data, root));
+    }
+
+    /**
+     * @param data
+     *            data being removed
+     * @param node
+     *            node we're currently at
+     * @return Node new root of this subtree
+     */
+    private Node<T> remove(T data, Node<T> node) {
+        if (node == null) {
+            throw new NoSuchElementException(
+                    "Data is not in AVL cannot be removed");
+        }
+        int i = data.compareTo(node.key);
+        if (i < 0) {
+            return balance(node.key, remove(data, node.left), node.right);
+        } else if (i > 0) {
+            return balance(node.key, node.left, remove(data, node.right));
+        }
+        if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        }
+        Node<T> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.key, node.left, removeMin(node.right));
+    }
+
+    /**
+     * @param node
+     *            node we're currently at
+     * @return Node this subtree without its smallest node
+     */
+    private Node<T> removeMin(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, removeMin(node.left), node.right);
+    }
+
+    /**
+     * Returns the data in the tree equal to the parameter.
+     *
+     * @param data
+     *            data to get
+     * @return T the data stored in the tree
+     * @throws IllegalArgumentException
+     *             if data is null
+     * @throws java.util.NoSuchElementException
+     *             if data is not in the tree
+     */
+    public T get(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data entered is null");
+        }
+        Node<T> node = find(data);
+        if (node == null) {
+            throw new NoSuchElementException("Data is not in AVL");
+        }
+        return node.key;
+    }
+
+    /**
+     * Returns whether or not the parameter is contained within the tree.
+     *
+     * @param data
+     *            data to find
+     * @return boolean whether data is in the tree
+     * @throws IllegalArgumentException
+     *             if data is null
+     */
+    public boolean contains(T data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data given is null");
+        }
+        return find(data) != null;
+    }
+
+    /**
+     * @param data
+     *            data being found
+     * @return Node holding data, or null if it is not in the tree
+     */
+    private Node<T> find(T data) {
+        Node<T> node = root;
+        while (node != null) {
+            int i = data.compareTo(node.key);
+            if (i == 0) {
+                return node;
+            }
+            node = i < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of elements in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Return the height of the root of the tree.
+     *
+     * @return the height of the root of the tree, -1 if the tree is empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Get the preorder traversal of the tree.
+     *
+     * @return a preorder traversal of the tree, or an empty list
+     */
+    public List<T> preorder() {
+        List<T> nodes = new ArrayList<T>(size());
+        preorder(nodes, root);
+        return nodes;
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void preorder(List<T> nodes, Node<T> node) {
+        if (node != null) {
+            nodes.add(node.key);
+            preorder(nodes, node.left);
+            preorder(nodes, node.right);
+        }
+    }
+
+    /**
+     * Get the postorder traversal of the tree.
+     *
+     * @return a postorder traversal of the tree, or an empty list
+     */
+    public List<T> postorder() {
+        List<T> nodes = new ArrayList<T>(size());
+        postorder(nodes, root);
+        return nodes;
+    }
+
+    /**
+     * @param nodes
+     *            list of data so far
+     * @param node
+     *            node we're currently at
+     */
+    private void postorder(List<T> nodes, Node<T> node) {
+        if (node != null) {
+            postorder(nodes, node.left);
+            postorder(nodes, node.right);
+            nodes.add(node.key);
+        }
+    }
+
+    /**
+     * Get the inorder traversal of the tree.
+     *
+     * @return an inorder traversal of the tree, or an empty list
+     */
+    public List<T> inorder() {
+        List<T> nodes = new ArrayList<T>(size());
+        for (T data : this) {
+            nodes.add(data);
+        }
+        return nodes;
+    }
+
+    /**
+     * Get the level order traversal of the tree.
+     *
+     * @return a level order traversal of the tree, or an empty list
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<T> levelorder() {
+        List<T> nodes = new ArrayList<T>(size());
+        if (root == null) {
+            return nodes;
+        }
+        // every node goes through the queue once
+        Node<T>[] queue = (Node<T>[]) new Node[size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root;
+        while (head < tail) {
+            Node<T> current = queue[head++];
+            nodes.add(current.key);
+            if (current.left != null) {
+                queue[tail++] = current.left;
+            }
+            if (current.right != null) {
+                queue[tail++] = current.right;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns a lazy inorder iterator. Since the tree never changes it can be
+     * used while newer versions are being made.
+     *
+     * @return an inorder iterator
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Iterator<T> iterator() {
+        Node<T>[] stack = (Node<T>[]) new Node[height() + 1];
+        return new Iterator<T>() {
+            private int top = pushLeft(root, 0);
+
+            /**
+             * @param node
+             *            node whose left spine gets pushed
+             * @param index
+             *            stack size before pushing
+             * @return int stack size after pushing
+             */
+            private int pushLeft(Node<T> node, int index) {
+                while (node != null) {
+                    stack[index++] = node;
+                    node = node.left;
+                }
+                return index;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return top > 0;
+            }
+
+            @Override
+            public T next() {
+                if (top == 0) {
+                    throw new NoSuchElementException("No more data in the AVL");
+                }
+                Node<T> node = stack[--top];
+                top = pushLeft(node.right, top);
+                return node.key;
+            }
+        };
+    }
+
+    /**
+     * @param node
+     *            node whose height is wanted, may be null
+     * @return int height of the node, -1 if node is null
+     */
+    private static int height(Node<?> node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * @param node
+     *            root of a subtree, may be null
+     * @return int size of the subtree, 0 if node is null
+     */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Builds a node over two subtrees whose heights differ by at most two,
+     * rotating if they differ by two.
+     *
+     * @param key
+     *            key of the new node
+     * @param left
+     *            left subtree
+     * @param right
+     *            right subtree
+     * @return Node new balanced root of the subtree
+     */
+    private static <T> Node<T> balance(T key, Node<T> left, Node<T> right) {
+        int balanceFactor = height(left) - height(right);
+        if (balanceFactor > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<T>(left.key, left.left, new Node<T>(key,
+                        left.right, right));
+            }
+            Node<T> middle = left.right;
+            return new Node<T>(middle.key, new Node<T>(left.key, left.left,
+                    middle.left), new Node<T>(key, middle.right, right));
+        } else if (balanceFactor < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<T>(right.key, new Node<T>(key, left,
+                        right.left), right.right);
+            }
+            Node<T> middle = right.left;
+            return new Node<T>(middle.key, new Node<T>(key, left,
+                    middle.left), new Node<T>(right.key, middle.right,
+                    right.right));
+        }
+        return new Node<T>(key, left, right);
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests PersistentAVL, mainly that old versions never change.
+ *
+ * @author jredston3
+ * @version 1.0
+ */
+public class PersistentAVLTests {
+    private static final int TIMEOUT = 200;
+
+    @Test(timeout = TIMEOUT)
+    public void testMatchesAVL() {
+        Random random = new Random(1332);
+        PersistentAVL<Integer> persistent = PersistentAVL.empty();
+        AVL<Integer> avlTree = new AVL<>();
+        for (int i = 0; i < 5000; i++) {
+            Integer key = random.nextInt(1000);
+            if (random.nextInt(2) == 0 && avlTree.contains(key)) {
+                avlTree.remove(key);
+                persistent = persistent.remove(key);
+            } else {
+                avlTree.add(key);
+                persistent = persistent.add(key);
+            }
+        }
+
+        assertEquals(avlTree.size(), persistent.size());
+        assertEquals(avlTree.height(), persistent.height());
+        assertEquals(avlTree.preorder(), persistent.preorder());
+        assertEquals(avlTree.inorder(), persistent.inorder());
+        assertEquals(avlTree.postorder(), persistent.postorder());
+        assertEquals(avlTree.levelorder(), persistent.levelorder());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testOldVersionsUnchanged() {
+        List<PersistentAVL<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> contents = new ArrayList<>();
+        PersistentAVL<Integer> tree = PersistentAVL.of(Arrays.asList(5, 2,
+                8, 1, 4, 6, 9, 0, 3, 7));
+        for (int i = 0; i < 10; i++) {
+            versions.add(tree);
+            contents.add(tree.preorder());
+            tree = i % 2 == 0 ? tree.remove(i) : tree.add(i + 10);
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(contents.get(i), versions.get(i).preorder());
+        }
+        assertTrue(versions.get(0).contains(0));
+        assertFalse(versions.get(1).contains(0));
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer data : versions.get(0)) {
+            iterated.add(data);
+        }
+        assertEquals(versions.get(0).inorder(), iterated);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testAddExistingReturnsSameVersion() {
+        Integer stored = new Integer(646);
+        PersistentAVL<Integer> tree = PersistentAVL.<Integer>empty()
+                .add(stored).add(386);
+
+        assertSame(tree, tree.add(new Integer(646)));
+        assertSame(stored, tree.get(new Integer(646)));
+    }
+
+    @Test(timeout = TIMEOUT, expected = NoSuchElementException.class)
+    public void testRemoveMissing() {
+        PersistentAVL.<Integer>empty().add(1).remove(2);
+    }
+}